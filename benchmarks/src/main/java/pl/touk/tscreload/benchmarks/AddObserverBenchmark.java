@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pl.touk.tscreload.Reloadable;
+import pl.touk.tscreload.impl.AbstractObserver;
+import pl.touk.tscreload.impl.Observer;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class AddObserverBenchmark {
+
+    private SettableReloadable<Integer> root;
+
+    // keeps some observers alive so propagation has work to do
+    private Reloadable<?>[] children;
+
+    @Setup
+    public void setUp() {
+        root = new SettableReloadable<>(0);
+        children = new Reloadable<?>[100];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = root.map(v -> v + 1);
+        }
+    }
+
+    @Benchmark
+    @Group("subscribeDuringPropagation")
+    @GroupThreads(3)
+    public Observer<Integer> subscribe() {
+        Observer<Integer> observer = new AbstractObserver<Integer>() {
+            @Override
+            public void notifyChanged(Integer changedValue) {
+            }
+        };
+        root.addWeakObserver(observer);
+        return observer;
+    }
+
+    @Benchmark
+    @Group("subscribeDuringPropagation")
+    @GroupThreads(1)
+    public void propagate() {
+        root.set(root.currentValue() + 1);
+    }
+
+}
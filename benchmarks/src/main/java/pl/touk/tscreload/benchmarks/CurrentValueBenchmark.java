@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pl.touk.tscreload.Reloadable;
+import pl.touk.tscreload.ReloadableInt;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class CurrentValueBenchmark {
+
+    private SettableReloadable<Integer> root;
+
+    private Reloadable<Integer> mapped;
+
+    private ReloadableInt mappedToInt;
+
+    @Setup
+    public void setUp() {
+        root = new SettableReloadable<>(1);
+        mapped = root.map(i -> i + 1);
+        mappedToInt = root.mapToInt(i -> i + 1);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Integer singleThreadedRead() {
+        return mapped.currentValue();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int singleThreadedPrimitiveRead() {
+        return mappedToInt.getAsInt();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Integer multiThreadedRead() {
+        return mapped.currentValue();
+    }
+
+    @Benchmark
+    @Group("readDuringPropagation")
+    @GroupThreads(3)
+    public Integer read() {
+        return mapped.currentValue();
+    }
+
+    @Benchmark
+    @Group("readDuringPropagation")
+    @GroupThreads(1)
+    public void propagate() {
+        root.set(root.currentValue() + 1);
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pl.touk.tscreload.Reloadable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class PropagationBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int depth;
+
+    @Param({"1", "100", "1000"})
+    private int width;
+
+    private SettableReloadable<Integer> root;
+
+    // hard references - observers are weakly referenced by their parents
+    private final List<Reloadable<Integer>> leaves = new ArrayList<>();
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        root = new SettableReloadable<>(0);
+        for (int i = 0; i < width; i++) {
+            Reloadable<Integer> node = root;
+            for (int d = 0; d < depth; d++) {
+                node = d % 2 == 0 ?
+                        node.map(v -> v + 1) :
+                        Reloadable.compose(node, root, (v, r) -> v + r);
+            }
+            leaves.add(node);
+        }
+    }
+
+    @Benchmark
+    public Integer propagateChange() {
+        root.set(++next);
+        return leaves.get(0).currentValue();
+    }
+
+}
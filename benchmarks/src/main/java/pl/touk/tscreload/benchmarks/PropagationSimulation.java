@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.benchmarks;
+
+import pl.touk.tscreload.ConfigSource;
+import pl.touk.tscreload.ReloadMetrics;
+import pl.touk.tscreload.Reloadable;
+import pl.touk.tscreload.ReloadableConfigFactory;
+import pl.touk.tscreload.impl.Reloader;
+import pl.touk.tscreload.impl.VirtualClock;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Simulates hours of ticks and changes of many reloadables in virtual time. Changes are triggered by in-memory sources
+// instead of files, ticks are triggered on this thread after advancing virtual clock, so the run is deterministic
+// for given seed. Arguments: [reloadables] [simulated hours] [changes per simulated minute] [seed]
+public class PropagationSimulation {
+
+    private static final Duration TICK = Duration.ofMillis(100);
+
+    private static final Duration CHECK_INTERVAL = Duration.ofSeconds(5);
+
+    private static final int GROUP_SIZE = 10;
+
+    public static void main(String[] args) {
+        int reloadablesCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        long hours = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        int changesPerMinute = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+
+        VirtualClock clock = new VirtualClock(Instant.EPOCH);
+        Reloader reloader = new Reloader(TICK, 1, clock, null);
+        ReloadableConfigFactory.setReloader(reloader).cancel(false);
+        CountingMetrics metrics = new CountingMetrics();
+        ReloadableConfigFactory.setMetrics(metrics);
+
+        List<SimulatedSource> sources = new ArrayList<>();
+        // hard references - observers are weakly referenced by their parents
+        List<Reloadable<?>> graph = new ArrayList<>();
+        List<Reloadable<Integer>> group = new ArrayList<>();
+        for (int i = 0; i < reloadablesCount; i++) {
+            SimulatedSource source = new SimulatedSource(i);
+            sources.add(source);
+            Reloadable<Integer> loaded = ReloadableConfigFactory.load(source, CHECK_INTERVAL);
+            Reloadable<Integer> derived = loaded.map(v -> v + 1);
+            graph.add(loaded);
+            graph.add(derived);
+            group.add(derived);
+            if (group.size() == GROUP_SIZE) {
+                graph.add(Reloadable.compose(group, (List<Integer> values) ->
+                        values.stream().mapToInt(Integer::intValue).sum()));
+                group = new ArrayList<>();
+            }
+        }
+
+        Random random = new Random(seed);
+        long ticks = Duration.ofHours(hours).toMillis() / TICK.toMillis();
+        double changesPerTick = changesPerMinute * TICK.toMillis() / 60_000.0;
+        double pendingChanges = 0;
+        long changes = 0;
+        long start = System.nanoTime();
+        for (long tick = 0; tick < ticks; tick++) {
+            for (pendingChanges += changesPerTick; pendingChanges >= 1; pendingChanges--) {
+                sources.get(random.nextInt(sources.size())).change();
+                changes++;
+            }
+            clock.advance(TICK);
+            reloader.tick();
+        }
+        long durationNanos = System.nanoTime() - start;
+
+        System.out.printf("Simulated %d ticks (%s) of %d reloadables (%d nodes) in %d ms%n",
+                ticks, Duration.ofHours(hours), reloadablesCount, graph.size(), durationNanos / 1_000_000);
+        System.out.printf("Changes: %d, transformations: %d, propagated changes: %d, recomputed nodes: %d%n",
+                changes, metrics.transformations.get(), metrics.waves.get(), metrics.recomputedNodes.get());
+        System.out.printf("Average propagation: %d ns, average tick: %d ns%n",
+                metrics.waves.get() > 0 ? metrics.propagationNanos.get() / metrics.waves.get() : 0,
+                ticks > 0 ? durationNanos / ticks : 0);
+    }
+
+    private static class SimulatedSource implements ConfigSource<Integer> {
+
+        private final int id;
+
+        private int version;
+
+        private int loadedVersion = -1;
+
+        private SimulatedSource(int id) {
+            this.id = id;
+        }
+
+        private void change() {
+            version++;
+        }
+
+        @Override
+        public Optional<Integer> loadIfChanged() {
+            if (version == loadedVersion) {
+                return Optional.empty();
+            }
+            loadedVersion = version;
+            return Optional.of(version);
+        }
+
+        @Override
+        public String toString() {
+            return "simulated-" + id;
+        }
+
+    }
+
+    private static class CountingMetrics implements ReloadMetrics {
+
+        private final AtomicLong transformations = new AtomicLong();
+
+        private final AtomicLong waves = new AtomicLong();
+
+        private final AtomicLong recomputedNodes = new AtomicLong();
+
+        private final AtomicLong propagationNanos = new AtomicLong();
+
+        @Override
+        public void transformed(Reloadable<?> reloadable, long durationNanos, boolean changePropagated) {
+            transformations.incrementAndGet();
+        }
+
+        @Override
+        public void propagated(int recomputedNodes, int failedNodes, long durationNanos) {
+            waves.incrementAndGet();
+            this.recomputedNodes.addAndGet(recomputedNodes);
+            propagationNanos.addAndGet(durationNanos);
+        }
+
+    }
+
+}
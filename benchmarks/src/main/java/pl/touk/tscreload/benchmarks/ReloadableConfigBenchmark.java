@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.benchmarks;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.openjdk.jmh.annotations.*;
+import pl.touk.tscreload.ReloadOptions;
+import pl.touk.tscreload.TransformationResult;
+import pl.touk.tscreload.impl.ReloadableConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+// Each invocation rewrites config file and checks it. When content is rewritten without changes,
+// only cost of change detection is measured.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ReloadableConfigBenchmark {
+
+    @Param({"10", "1000"})
+    private int sections;
+
+    @Param({"false", "true"})
+    private boolean contentChanged;
+
+    @Param({"false", "true"})
+    private boolean contentHash;
+
+    private File file;
+
+    private ReloadableConfig<Config> reloadable;
+
+    private long version;
+
+    private long tick;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("tsc-reload-benchmark", ".conf");
+        file.deleteOnExit();
+        writeConfig();
+        reloadable = new ReloadableConfig<>(Collections.singletonList(file), Duration.ZERO,
+                ReloadOptions.builder().watchFiles(false).contentHash(contentHash).build(),
+                prev -> TransformationResult.withPropagateChangeWhenValueChanged(prev, ConfigFactory.parseFile(file)));
+    }
+
+    @Setup(Level.Invocation)
+    public void rewriteConfig() throws IOException {
+        if (contentChanged) {
+            version++;
+        }
+        writeConfig();
+        // last modified has to be changed, otherwise file won't be checked at all
+        file.setLastModified(System.currentTimeMillis() + ++tick * 1000);
+    }
+
+    @Benchmark
+    public Config check() {
+        reloadable.notifyChanged(Instant.now());
+        return reloadable.currentValue();
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    private void writeConfig() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < sections; i++) {
+            content.append("section").append(i).append(" {\n")
+                    .append("  version: ").append(version).append("\n")
+                    .append("  name: \"section ").append(i).append("\"\n")
+                    .append("  timeout: 10 seconds\n")
+                    .append("  hosts: [\"host1:8080\", \"host2:8080\", \"host3:8080\"]\n")
+                    .append("  nested { enabled: true, ratio: 0.75 }\n")
+                    .append("}\n");
+        }
+        Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.benchmarks;
+
+import pl.touk.tscreload.Reloadable;
+import pl.touk.tscreload.TransformationResult;
+
+// root of benchmarked graphs - changes are triggered directly instead of by file changes
+public class SettableReloadable<T> extends Reloadable<T> {
+
+    public SettableReloadable(T current) {
+        super(current);
+    }
+
+    public void set(T value) {
+        updateCurrentValue(prev -> new TransformationResult<>(value, true));
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CompositeReloadMetrics implements ReloadMetrics {
+
+    private final List<ReloadMetrics> metrics;
+
+    public CompositeReloadMetrics(List<ReloadMetrics> metrics) {
+        this.metrics = new ArrayList<>(metrics);
+    }
+
+    @Override
+    public void transformed(Reloadable<?> reloadable, long durationNanos, boolean changePropagated) {
+        metrics.forEach(m -> m.transformed(reloadable, durationNanos, changePropagated));
+    }
+
+    @Override
+    public void transformFailed(Reloadable<?> reloadable, long durationNanos, Throwable error) {
+        metrics.forEach(m -> m.transformFailed(reloadable, durationNanos, error));
+    }
+
+    @Override
+    public void propagated(int recomputedNodes, int failedNodes, long durationNanos) {
+        metrics.forEach(m -> m.propagated(recomputedNodes, failedNodes, durationNanos));
+    }
+
+    @Override
+    public void notificationFailed(Object observable, Throwable error) {
+        metrics.forEach(m -> m.notificationFailed(observable, error));
+    }
+
+    @Override
+    public void filesChecked(Reloadable<?> reloadable, long durationNanos, boolean changed) {
+        metrics.forEach(m -> m.filesChecked(reloadable, durationNanos, changed));
+    }
+
+    @Override
+    public void observersCountChanged(Object observable, int observersCount) {
+        metrics.forEach(m -> m.observersCountChanged(observable, observersCount));
+    }
+
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload;
+
+import java.util.Optional;
+
+// Source of configuration other than local files (which are watched by ReloadableConfigFactory.load(List<File>, ...)).
+// Sources are polled in check interval, so they should detect changes cheaply - see HttpConfigSource.
+public interface ConfigSource<T> {
+
+    // returns content loaded when it was changed since the last successful load, first invocation always loads it
+    Optional<T> loadIfChanged();
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload;
+
+import io.vavr.Function1;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Optional;
+
+// Loads configuration over HTTP using conditional requests - when server responds with ETag or Last-Modified headers,
+// checks of unchanged content cost only 304 Not Modified responses. Response body is streamed to the parser.
+@Slf4j
+public class HttpConfigSource<T> implements ConfigSource<T> {
+
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient client;
+
+    private final URI uri;
+
+    private final Duration timeout;
+
+    private final Function1<InputStream, T> parse;
+
+    // validators of the last loaded content, protected by synchronized block
+    private String etag;
+
+    private String lastModified;
+
+    private HttpConfigSource(HttpClient client, URI uri, Duration timeout, Function1<InputStream, T> parse) {
+        this.client = client;
+        this.uri = uri;
+        this.timeout = timeout;
+        this.parse = parse;
+    }
+
+    public static <T> HttpConfigSource<T> of(URI uri, Function1<InputStream, T> parse) {
+        return of(HttpClient.newBuilder().connectTimeout(DEFAULT_TIMEOUT).build(), uri, DEFAULT_TIMEOUT, parse);
+    }
+
+    public static <T> HttpConfigSource<T> of(HttpClient client, URI uri, Duration timeout, Function1<InputStream, T> parse) {
+        return new HttpConfigSource<>(client, uri, timeout, parse);
+    }
+
+    @Override
+    public synchronized Optional<T> loadIfChanged() {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(timeout).GET();
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            request.header("If-Modified-Since", lastModified);
+        }
+        try {
+            HttpResponse<InputStream> response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                if (response.statusCode() == 304) {
+                    log.trace("{} Content was not modified", this);
+                    return Optional.empty();
+                }
+                if (response.statusCode() != 200) {
+                    throw new UncheckedIOException(new IOException(
+                            "Unexpected status " + response.statusCode() + " while loading configuration from " + uri));
+                }
+                T value = parse.apply(body);
+                etag = response.headers().firstValue("ETag").orElse(null);
+                lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+                log.debug("{} Loaded changed content, ETag: {}, Last-Modified: {}", this, etag, lastModified);
+                return Optional.of(value);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error while loading configuration from " + uri, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading configuration from " + uri, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return uri.toString();
+    }
+
+}
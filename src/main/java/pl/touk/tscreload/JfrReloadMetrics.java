@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Emits JDK Flight Recorder events. When no recording is running, events are not even created.
+public class JfrReloadMetrics implements ReloadMetrics {
+
+    private static final TransformEvent TRANSFORM_EVENT = new TransformEvent();
+
+    private static final PropagationEvent PROPAGATION_EVENT = new PropagationEvent();
+
+    private static final FilesCheckEvent FILES_CHECK_EVENT = new FilesCheckEvent();
+
+    private static final ObserversEvent OBSERVERS_EVENT = new ObserversEvent();
+
+    @Override
+    public void transformed(Reloadable<?> reloadable, long durationNanos, boolean changePropagated) {
+        commitTransform(reloadable, durationNanos, changePropagated, null);
+    }
+
+    @Override
+    public void transformFailed(Reloadable<?> reloadable, long durationNanos, Throwable error) {
+        commitTransform(reloadable, durationNanos, false, error);
+    }
+
+    private void commitTransform(Reloadable<?> reloadable, long durationNanos, boolean changePropagated, Throwable error) {
+        if (TRANSFORM_EVENT.isEnabled()) {
+            TransformEvent event = new TransformEvent();
+            event.reloadable = reloadable.getName();
+            event.rank = reloadable.getRank();
+            event.transformDuration = durationNanos;
+            event.changePropagated = changePropagated;
+            event.error = error != null ? error.toString() : null;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void propagated(int recomputedNodes, int failedNodes, long durationNanos) {
+        if (PROPAGATION_EVENT.isEnabled()) {
+            PropagationEvent event = new PropagationEvent();
+            event.recomputedNodes = recomputedNodes;
+            event.failedNodes = failedNodes;
+            event.propagationDuration = durationNanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void filesChecked(Reloadable<?> reloadable, long durationNanos, boolean changed) {
+        if (FILES_CHECK_EVENT.isEnabled()) {
+            FilesCheckEvent event = new FilesCheckEvent();
+            event.reloadable = reloadable.getName();
+            event.checkDuration = durationNanos;
+            event.changed = changed;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void observersCountChanged(Object observable, int observersCount) {
+        if (OBSERVERS_EVENT.isEnabled()) {
+            ObserversEvent event = new ObserversEvent();
+            event.observable = observable instanceof Reloadable ?
+                    ((Reloadable<?>) observable).getName() :
+                    observable.toString();
+            event.observersCount = observersCount;
+            event.commit();
+        }
+    }
+
+    @Name("pl.touk.tscreload.Transform")
+    @Label("Reloadable Transformation")
+    @Category("tsc-reload")
+    @StackTrace(false)
+    static class TransformEvent extends Event {
+
+        @Label("Reloadable")
+        String reloadable;
+
+        @Label("Rank")
+        int rank;
+
+        @Label("Transformation Duration")
+        @Timespan
+        long transformDuration;
+
+        @Label("Change Propagated")
+        boolean changePropagated;
+
+        @Label("Error")
+        String error;
+
+    }
+
+    @Name("pl.touk.tscreload.Propagation")
+    @Label("Propagation Wave")
+    @Category("tsc-reload")
+    @StackTrace(false)
+    static class PropagationEvent extends Event {
+
+        @Label("Recomputed Nodes")
+        int recomputedNodes;
+
+        @Label("Failed Nodes")
+        int failedNodes;
+
+        @Label("Propagation Duration")
+        @Timespan
+        long propagationDuration;
+
+    }
+
+    @Name("pl.touk.tscreload.FilesCheck")
+    @Label("Files Check")
+    @Category("tsc-reload")
+    @StackTrace(false)
+    static class FilesCheckEvent extends Event {
+
+        @Label("Reloadable")
+        String reloadable;
+
+        @Label("Check Duration")
+        @Timespan
+        long checkDuration;
+
+        @Label("Changed")
+        boolean changed;
+
+    }
+
+    @Name("pl.touk.tscreload.Observers")
+    @Label("Observers Count")
+    @Category("tsc-reload")
+    @StackTrace(false)
+    static class ObserversEvent extends Event {
+
+        @Label("Observable")
+        String observable;
+
+        @Label("Observers Count")
+        int observersCount;
+
+    }
+
+}
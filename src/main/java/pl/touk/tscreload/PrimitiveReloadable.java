@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload;
+
+import io.vavr.Function1;
+import pl.touk.tscreload.impl.Observable;
+import pl.touk.tscreload.impl.Observer;
+import pl.touk.tscreload.impl.Propagation;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+// Base of primitive variants of map. Subclasses keep primitive copy of current value, written together with the boxed
+// one, so it is never ahead of currentValue(), snapshots and children. Boxed value is reused until primitive value
+// is changed, so unchanged value won't be propagated.
+public abstract class PrimitiveReloadable<T> extends Reloadable<T> implements Observer<Object>, Propagation.Node {
+
+    private final Set<Observable<?>> parents = Collections.synchronizedSet(new HashSet<>());
+
+    // created once, so recomputation doesn't allocate capturing lambda on each update
+    private final Function1<Object, T> recomputation = this::transform;
+
+    // access to currentParentValue is synchronized on this
+    private Object currentParentValue;
+
+    PrimitiveReloadable(T currentValue, Object currentParentValue, int rank) {
+        super(currentValue, rank);
+        this.currentParentValue = currentParentValue;
+    }
+
+    // returns current boxed value when primitive value is not changed
+    abstract T transform(Object parentValue);
+
+    @Override
+    public void addParent(Observable<?> observable) {
+        parents.add(observable);
+    }
+
+    @Override
+    public void notifyChanged(Object parentValue) {
+        synchronized (this) {
+            currentParentValue = parentValue;
+        }
+        Propagation.schedule(this);
+    }
+
+    @Override
+    public synchronized void recompute() {
+        updateCurrentValue(recomputation, currentParentValue);
+    }
+
+}
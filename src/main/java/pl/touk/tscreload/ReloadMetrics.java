@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload;
+
+// All callbacks are invoked synchronously on threads doing reloads, so implementations should be cheap.
+// When no metrics are registered, time is not even measured.
+public interface ReloadMetrics {
+
+    ReloadMetrics NOOP = new ReloadMetrics() {
+    };
+
+    // transformation of value of reloadable (parsing of config for ReloadableConfig) finished
+    default void transformed(Reloadable<?> reloadable, long durationNanos, boolean changePropagated) {
+    }
+
+    default void transformFailed(Reloadable<?> reloadable, long durationNanos, Throwable error) {
+    }
+
+    // whole propagation wave of change finished
+    default void propagated(int recomputedNodes, int failedNodes, long durationNanos) {
+    }
+
+    default void notificationFailed(Object observable, Throwable error) {
+    }
+
+    default void filesChecked(Reloadable<?> reloadable, long durationNanos, boolean changed) {
+    }
+
+    // observer was added to reloadable (or other observable) or collected observers were removed from it.
+    // Collected observers are removed (and counted) on next addition or notification
+    default void observersCountChanged(Object observable, int observersCount) {
+    }
+
+}
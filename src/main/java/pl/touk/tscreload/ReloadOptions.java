@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.io.File;
+import java.io.ObjectInputFilter;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+@Value
+@Builder(toBuilder = true)
+public class ReloadOptions {
+
+    // JDK classes and classes of Typesafe config and vavr - everything else has to be allowed explicitly
+    public static final ObjectInputFilter DEFAULT_SERIAL_FILTER =
+            ObjectInputFilter.Config.createFilter("java.**;com.typesafe.config.**;io.vavr.**;!*");
+
+    public static final ReloadOptions DEFAULT = builder().build();
+
+    // when enabled, changes are detected by WatchService and periodical checks are used only as a fallback
+    @Builder.Default
+    private boolean watchFiles = true;
+
+    // when enabled, configuration is reloaded only if digest of files content was changed
+    @Builder.Default
+    private boolean contentHash = false;
+
+    // when positive, configuration is reloaded only after state of files didn't change for this period,
+    // so burst of writes ends with one reload of final content
+    @Builder.Default
+    private Duration quietPeriod = Duration.ZERO;
+
+    // when enabled, configuration is parsed on other thread and previous value is available until parsing finishes.
+    // Parsing is done on the executor if given, otherwise on a shared pool of parser threads
+    @Builder.Default
+    private boolean backgroundParsing = false;
+
+    // when given, parsing in background (enabled by this option as well) is abandoned after this time
+    @Builder.Default
+    private Duration parseTimeout = null;
+
+    // when given, parsed value is serialized in this directory and loaded on start instead of parsing,
+    // when content of scanned files is the same as during parsing. Value has to be Serializable
+    @Builder.Default
+    private File cacheDirectory = null;
+
+    // distinguishes cached values of different transformations of the same files sharing cache directory
+    @Builder.Default
+    private String cacheKey = "";
+
+    // when given, processes loading the same files with this directory coordinate reloads: one of them checks and parses
+    // files and publishes parsed value there, the others only load published values. Value has to be Serializable.
+    // Files in the directory are distinguished by cacheKey as well
+    @Builder.Default
+    private File sharedDirectory = null;
+
+    // classes which can be deserialized from cacheDirectory and sharedDirectory. Anyone who can write to these
+    // directories can make process deserialize allowed classes, so directories should be accessible only by the service
+    @Builder.Default
+    private ObjectInputFilter serialFilter = DEFAULT_SERIAL_FILTER;
+
+    // executor on which checks, reloads and propagation of changes to derived values are done,
+    // null means that they are done on the thread of global reloader or file watcher
+    @Builder.Default
+    private Executor executor = null;
+
+}
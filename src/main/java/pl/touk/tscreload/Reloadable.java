@@ -19,7 +19,19 @@ import io.vavr.*;
 import lombok.extern.slf4j.Slf4j;
 import pl.touk.tscreload.impl.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 
 import static pl.touk.tscreload.TransformationResult.withPropagateChangeWhenValueChanged;
 
@@ -28,132 +40,410 @@ public abstract class Reloadable<T> extends Observable<T> {
 
     private volatile T current;
 
+    // writes of current value, checked by snapshots
+    private final WriteStamp writeStamp = new WriteStamp();
+
+    private final int rank;
+
+    private volatile String name;
+
+    // access to currentOptional and fingerprints is synchronized on this
+    private Optional<T> currentOptional;
+
+    private ToLongFunction<? super T> fingerprint;
+
+    private long currentFingerprint;
+
+    private boolean currentFingerprintComputed;
+
+    // incremented each time when change is propagated
+    private volatile long version;
+
     protected Reloadable(T current) {
+        this(current, 0);
+    }
+
+    protected Reloadable(T current, int rank) {
         this.current = current;
+        this.rank = rank;
     }
 
     protected synchronized void updateCurrentValue(Function1<Optional<T>, TransformationResult<T>> transform) {
-        TransformationResult<T> transformationResult = transform.apply(Optional.of(current));
+        ReloadMetrics metrics = Instrumentation.metrics();
+        boolean instrumented = metrics != ReloadMetrics.NOOP;
+        long start = instrumented ? System.nanoTime() : 0;
+        TransformationResult<T> transformationResult;
+        try {
+            transformationResult = transform.apply(currentOptionalValue());
+        } catch (RuntimeException | Error e) {
+            if (instrumented) {
+                metrics.transformFailed(this, System.nanoTime() - start, e);
+            }
+            throw e;
+        }
+        applyTransformed(transformationResult.getValue(), propagateChange(transformationResult), metrics, start);
+    }
+
+    // applies result of transformation done outside of this reloadable (e.g. in background),
+    // its duration is reported to metrics
+    protected synchronized void updateCurrentValue(TransformationResult<T> transformationResult, long durationNanos) {
+        ReloadMetrics metrics = Instrumentation.metrics();
+        applyTransformed(transformationResult.getValue(), propagateChange(transformationResult), metrics,
+                metrics != ReloadMetrics.NOOP ? System.nanoTime() - durationNanos : 0);
+    }
+
+    // variant of update which doesn't allocate anything by itself - change is propagated only when new value
+    // is not equal to the current one
+    protected synchronized <A> void updateCurrentValue(Function1<A, T> transform, A argument) {
+        ReloadMetrics metrics = Instrumentation.metrics();
+        boolean instrumented = metrics != ReloadMetrics.NOOP;
+        long start = instrumented ? System.nanoTime() : 0;
+        T newValue;
+        try {
+            newValue = transform.apply(argument);
+        } catch (RuntimeException | Error e) {
+            if (instrumented) {
+                metrics.transformFailed(this, System.nanoTime() - start, e);
+            }
+            throw e;
+        }
+        applyTransformed(newValue, valueChanged(newValue), metrics, start);
+    }
+
+    // result of comparison with previous value is checked by fingerprints, when they are used by this reloadable
+    private boolean propagateChange(TransformationResult<T> transformationResult) {
+        T newValue = transformationResult.getValue();
+        if (fingerprint != null && current != null && transformationResult.isComparedWithPrevValue()) {
+            return valueChanged(newValue);
+        }
+        if (newValue != current) {
+            currentFingerprintComputed = false;
+        }
+        return transformationResult.isPropagateChange();
+    }
+
+    // fingerprint of current value is computed once, so change is usually detected without deep comparison
+    // - after it, fingerprint of new value is saved as the current one
+    private boolean valueChanged(T newValue) {
+        if (fingerprint == null || newValue == null || current == null) {
+            currentFingerprintComputed = false;
+            return !TransformationResult.valuesEqual(newValue, current);
+        }
+        if (!currentFingerprintComputed) {
+            currentFingerprint = fingerprint.applyAsLong(current);
+        }
+        long newFingerprint = fingerprint.applyAsLong(newValue);
+        boolean changed = newFingerprint != currentFingerprint || !newValue.equals(current);
+        currentFingerprint = newFingerprint;
+        currentFingerprintComputed = true;
+        return changed;
+    }
+
+    private void applyTransformed(T newValue, boolean propagateChange, ReloadMetrics metrics, long start) {
+        if (metrics != ReloadMetrics.NOOP) {
+            metrics.transformed(this, System.nanoTime() - start, propagateChange);
+        }
         if (log.isTraceEnabled()) {
-            log.trace("{} Updating current value. Change {} be propagated.", this, (transformationResult.isPropagateChange() ? "will" : "won't"));
+            log.trace("{} Updating current value. Change {} be propagated.", this, (propagateChange ? "will" : "won't"));
+        }
+        // change of value and its propagation are done in one wave, so snapshots won't see only a part of them
+        Propagation propagation = Propagation.start();
+        try {
+            if (newValue != current) {
+                Propagation.startWrite(writeStamp);
+                current = newValue;
+                currentOptional = null;
+                currentValueWritten(newValue);
+            }
+            if (propagateChange) {
+                version++;
+                notifyObservers(newValue);
+            }
+        } finally {
+            Propagation.finish(propagation);
+        }
+    }
+
+    // hook for values derived from current one which have to be written together with it
+    void currentValueWritten(T newValue) {
+    }
+
+    // previous value passed to transformations is created only once per change
+    private Optional<T> currentOptionalValue() {
+        Optional<T> optional = currentOptional;
+        if (optional == null) {
+            optional = Optional.ofNullable(current);
+            currentOptional = optional;
         }
-        current = transformationResult.getValue();
-        if (transformationResult.isPropagateChange())
-            notifyObservers(transformationResult.getValue());
+        return optional;
     }
 
     public <U> Reloadable<U> map(Function1<T, U> f) {
-        return map((t, prev) -> withPropagateChangeWhenValueChanged(prev, f.apply(t)));
+        Reloadable1<T, U> child = new Reloadable1<>(currentValue(), rank + 1, f);
+        addWeakObserver(child);
+        return child;
     }
 
     public <U> Reloadable<U> map(Function2<T, Optional<U>, TransformationResult<U>> f) {
-        Reloadable1<T, U> child = new Reloadable1<>(currentValue(), f);
+        Reloadable1<T, U> child = new Reloadable1<>(currentValue(), rank + 1, f);
+        addWeakObserver(child);
+        return child;
+    }
+
+    // primitive variants of map - current value can be read without unboxing, boxed value is created only on change
+    public ReloadableInt mapToInt(ToIntFunction<? super T> f) {
+        return addPrimitiveChild(new ReloadableInt(currentValue(), rank + 1, f));
+    }
+
+    public ReloadableLong mapToLong(ToLongFunction<? super T> f) {
+        return addPrimitiveChild(new ReloadableLong(currentValue(), rank + 1, f));
+    }
+
+    public ReloadableDouble mapToDouble(ToDoubleFunction<? super T> f) {
+        return addPrimitiveChild(new ReloadableDouble(currentValue(), rank + 1, f));
+    }
+
+    public ReloadableBoolean mapToBoolean(Predicate<? super T> f) {
+        return addPrimitiveChild(new ReloadableBoolean(currentValue(), rank + 1, f));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R extends PrimitiveReloadable<?>> R addPrimitiveChild(R child) {
+        addWeakObserver((Observer<T>) child);
+        return child;
+    }
+
+    // value is computed on first read after change of this reloadable, at most once per change
+    public <U> Reloadable<U> lazyMap(Function1<T, U> f) {
+        return lazyMap((t, prev) -> withPropagateChangeWhenValueChanged(prev, f.apply(t)));
+    }
+
+    public <U> Reloadable<U> lazyMap(Function2<T, Optional<U>, TransformationResult<U>> f) {
+        LazyReloadable1<T, U> child = new LazyReloadable1<>(this, rank + 1, f);
         addWeakObserver(child);
         return child;
     }
 
+    // current value and then its changes - slow subscribers skip intermediate values. Values are delivered
+    // on common ForkJoinPool or on given executor
+    public Flow.Publisher<T> asPublisher() {
+        return asPublisher(ForkJoinPool.commonPool());
+    }
+
+    public Flow.Publisher<T> asPublisher(Executor executor) {
+        return new ConflatingPublisher<>(this, executor);
+    }
+
     public T currentValue() {
         return current;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    // Values of this reloadable will be compared by fingerprints (e.g. structural hashes) before deep equals.
+    // Fingerprint is computed once per value. It is used by map and compose functions returning plain values
+    // and by transformations returning TransformationResult.withPropagateChangeWhenValueChanged.
+    public synchronized Reloadable<T> fingerprinted(ToLongFunction<? super T> fingerprint) {
+        this.fingerprint = fingerprint;
+        this.currentFingerprintComputed = false;
+        return this;
+    }
+
+    // name used in logs and metrics
+    public Reloadable<T> named(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public String getName() {
+        String name = this.name;
+        return name != null ? name : getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(this));
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+
+    // rank of each node is greater than ranks of its parents - it determines order of recomputation during propagation
+    public int getRank() {
+        return rank;
+    }
+
+    @SuppressWarnings("unchecked")
     public static <R1, R2, U> Reloadable<U> compose(Reloadable<R1> r1,
                                                     Reloadable<R2> r2,
                                                     Function2<R1, R2, U> f) {
-        return compose(r1, r2, (p1, p2, prev) -> withPropagateChangeWhenValueChanged(prev, f.apply(p1, p2)));
+        return composeN(new Reloadable<?>[] { r1, r2 }, v -> f.apply((R1) v[0], (R2) v[1]));
     }
 
+    @SuppressWarnings("unchecked")
     public static <R1, R2, U> Reloadable<U> compose(Reloadable<R1> r1,
                                                     Reloadable<R2> r2,
                                                     Function3<R1, R2, Optional<U>, TransformationResult<U>> f) {
-        Reloadable2<R1, R2, U> reloadable = new Reloadable2<>(
-                r1.currentValue(),
-                r2.currentValue(),
-                f);
-        r1.addWeakObserver(reloadable.observer1);
-        r2.addWeakObserver(reloadable.observer2);
-        return reloadable;
+        return composeN(new Reloadable<?>[] { r1, r2 }, (v, prev) -> f.apply((R1) v[0], (R2) v[1], prev));
     }
 
+    @SuppressWarnings("unchecked")
     public static <R1, R2, R3, U> Reloadable<U> compose(Reloadable<R1> r1,
                                                         Reloadable<R2> r2,
                                                         Reloadable<R3> r3,
                                                         Function3<R1, R2, R3, U> f) {
-        return compose(r1, r2, r3,
-                (p1, p2, p3, prev) -> withPropagateChangeWhenValueChanged(prev, f.apply(p1, p2, p3)));
+        return composeN(new Reloadable<?>[] { r1, r2, r3 }, v -> f.apply((R1) v[0], (R2) v[1], (R3) v[2]));
     }
 
+    @SuppressWarnings("unchecked")
     public static <R1, R2, R3, U> Reloadable<U> compose(Reloadable<R1> r1,
                                                         Reloadable<R2> r2,
                                                         Reloadable<R3> r3,
                                                         Function4<R1, R2, R3, Optional<U>, TransformationResult<U>> f) {
-        Reloadable3<R1, R2, R3, U> reloadable = new Reloadable3<>(
-                r1.currentValue(),
-                r2.currentValue(),
-                r3.currentValue(),
-                f);
-        r1.addWeakObserver(reloadable.observer1);
-        r2.addWeakObserver(reloadable.observer2);
-        r3.addWeakObserver(reloadable.observer3);
-        return reloadable;
+        return composeN(new Reloadable<?>[] { r1, r2, r3 },
+                (v, prev) -> f.apply((R1) v[0], (R2) v[1], (R3) v[2], prev));
     }
 
-
+    @SuppressWarnings("unchecked")
     public static <R1, R2, R3, R4, U> Reloadable<U> compose(Reloadable<R1> r1,
                                                             Reloadable<R2> r2,
                                                             Reloadable<R3> r3,
                                                             Reloadable<R4> r4,
                                                             Function4<R1, R2, R3, R4, U> f) {
-        return compose(r1, r2, r3, r4,
-                (p1, p2, p3, p4, prev) -> withPropagateChangeWhenValueChanged(prev, f.apply(p1, p2, p3, p4)));
+        return composeN(new Reloadable<?>[] { r1, r2, r3, r4 },
+                v -> f.apply((R1) v[0], (R2) v[1], (R3) v[2], (R4) v[3]));
     }
 
+    @SuppressWarnings("unchecked")
     public static <R1, R2, R3, R4, U> Reloadable<U> compose(Reloadable<R1> r1,
                                                             Reloadable<R2> r2,
                                                             Reloadable<R3> r3,
                                                             Reloadable<R4> r4,
                                                             Function5<R1, R2, R3, R4, Optional<U>, TransformationResult<U>> f) {
-        Reloadable4<R1, R2, R3, R4, U> reloadable = new Reloadable4<>(
-                r1.currentValue(),
-                r2.currentValue(),
-                r3.currentValue(),
-                r4.currentValue(),
-                f);
-        r1.addWeakObserver(reloadable.observer1);
-        r2.addWeakObserver(reloadable.observer2);
-        r3.addWeakObserver(reloadable.observer3);
-        r4.addWeakObserver(reloadable.observer4);
-        return reloadable;
+        return composeN(new Reloadable<?>[] { r1, r2, r3, r4 },
+                (v, prev) -> f.apply((R1) v[0], (R2) v[1], (R3) v[2], (R4) v[3], prev));
     }
 
+    @SuppressWarnings("unchecked")
     public static <R1, R2, R3, R4, R5, U> Reloadable<U> compose(Reloadable<R1> r1,
                                                                 Reloadable<R2> r2,
                                                                 Reloadable<R3> r3,
                                                                 Reloadable<R4> r4,
                                                                 Reloadable<R5> r5,
                                                                 Function5<R1, R2, R3, R4, R5, U> f) {
-        return compose(r1, r2, r3, r4, r5,
-                (p1, p2, p3, p4, p5, prev) -> withPropagateChangeWhenValueChanged(prev, f.apply(p1, p2, p3, p4, p5)));
+        return composeN(new Reloadable<?>[] { r1, r2, r3, r4, r5 },
+                v -> f.apply((R1) v[0], (R2) v[1], (R3) v[2], (R4) v[3], (R5) v[4]));
     }
 
+    @SuppressWarnings("unchecked")
     public static <R1, R2, R3, R4, R5, U> Reloadable<U> compose(Reloadable<R1> r1,
                                                                 Reloadable<R2> r2,
                                                                 Reloadable<R3> r3,
                                                                 Reloadable<R4> r4,
                                                                 Reloadable<R5> r5,
                                                                 Function6<R1, R2, R3, R4, R5, Optional<U>, TransformationResult<U>> f) {
-        Reloadable5<R1, R2, R3, R4, R5, U> reloadable = new Reloadable5<>(
-                r1.currentValue(),
-                r2.currentValue(),
-                r3.currentValue(),
-                r4.currentValue(),
-                r5.currentValue(),
-                f);
-        r1.addWeakObserver(reloadable.observer1);
-        r2.addWeakObserver(reloadable.observer2);
-        r3.addWeakObserver(reloadable.observer3);
-        r4.addWeakObserver(reloadable.observer4);
-        r5.addWeakObserver(reloadable.observer5);
+        return composeN(new Reloadable<?>[] { r1, r2, r3, r4, r5 },
+                (v, prev) -> f.apply((R1) v[0], (R2) v[1], (R3) v[2], (R4) v[3], (R5) v[4], prev));
+    }
+
+    // composition of any number of reloadables without intermediate nodes - values are passed in the same order
+    @SuppressWarnings("unchecked")
+    public static <R, U> Reloadable<U> compose(List<? extends Reloadable<? extends R>> reloadables,
+                                               Function1<List<R>, U> f) {
+        return composeN(reloadables.toArray(new Reloadable<?>[0]),
+                v -> f.apply(Collections.unmodifiableList(Arrays.asList((R[]) v.clone()))));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <R, U> Reloadable<U> compose(List<? extends Reloadable<? extends R>> reloadables,
+                                               Function2<List<R>, Optional<U>, TransformationResult<U>> f) {
+        return composeN(reloadables.toArray(new Reloadable<?>[0]),
+                (v, prev) -> f.apply(Collections.unmodifiableList(Arrays.asList((R[]) v.clone())), prev));
+    }
+
+    private static <U> Reloadable<U> composeN(Reloadable<?>[] reloadables,
+                                              Function1<Object[], U> f) {
+        return observeAll(reloadables, new ReloadableN<>(currentValues(reloadables), maxRank(reloadables) + 1, f));
+    }
+
+    private static <U> Reloadable<U> composeN(Reloadable<?>[] reloadables,
+                                              Function2<Object[], Optional<U>, TransformationResult<U>> f) {
+        return observeAll(reloadables, new ReloadableN<>(currentValues(reloadables), maxRank(reloadables) + 1, f));
+    }
+
+    private static Object[] currentValues(Reloadable<?>[] reloadables) {
+        Object[] values = new Object[reloadables.length];
+        for (int i = 0; i < reloadables.length; i++) {
+            values[i] = reloadables[i].currentValue();
+        }
+        return values;
+    }
+
+    private static <U> Reloadable<U> observeAll(Reloadable<?>[] reloadables, ReloadableN<U> reloadable) {
+        for (int i = 0; i < reloadables.length; i++) {
+            reloadables[i].addWeakObserver(reloadable.observer(i));
+        }
         return reloadable;
     }
 
+    // Snapshots of values - all of them are the results of the same completed propagations of changes.
+    // Reads don't take locks, they are repeated when some propagation was started in the meantime.
+    public static <R1, R2> Tuple2<R1, R2> snapshot(Reloadable<R1> r1,
+                                                   Reloadable<R2> r2) {
+        return Propagation.readConsistently(() -> Tuple.of(r1.currentValue(), r2.currentValue()),
+                r1.writeStamp, r2.writeStamp);
+    }
+
+    public static <R1, R2, R3> Tuple3<R1, R2, R3> snapshot(Reloadable<R1> r1,
+                                                           Reloadable<R2> r2,
+                                                           Reloadable<R3> r3) {
+        return Propagation.readConsistently(() -> Tuple.of(r1.currentValue(), r2.currentValue(), r3.currentValue()),
+                r1.writeStamp, r2.writeStamp, r3.writeStamp);
+    }
+
+    public static <R1, R2, R3, R4> Tuple4<R1, R2, R3, R4> snapshot(Reloadable<R1> r1,
+                                                                   Reloadable<R2> r2,
+                                                                   Reloadable<R3> r3,
+                                                                   Reloadable<R4> r4) {
+        return Propagation.readConsistently(() -> Tuple.of(
+                r1.currentValue(), r2.currentValue(), r3.currentValue(), r4.currentValue()),
+                r1.writeStamp, r2.writeStamp, r3.writeStamp, r4.writeStamp);
+    }
+
+    public static <R1, R2, R3, R4, R5> Tuple5<R1, R2, R3, R4, R5> snapshot(Reloadable<R1> r1,
+                                                                           Reloadable<R2> r2,
+                                                                           Reloadable<R3> r3,
+                                                                           Reloadable<R4> r4,
+                                                                           Reloadable<R5> r5) {
+        return Propagation.readConsistently(() -> Tuple.of(
+                r1.currentValue(), r2.currentValue(), r3.currentValue(), r4.currentValue(), r5.currentValue()),
+                r1.writeStamp, r2.writeStamp, r3.writeStamp, r4.writeStamp, r5.writeStamp);
+    }
+
+    public static <R> List<R> snapshot(List<? extends Reloadable<? extends R>> reloadables) {
+        return Propagation.readConsistently(() -> {
+            List<R> values = new ArrayList<>(reloadables.size());
+            for (Reloadable<? extends R> reloadable : reloadables) {
+                values.add(reloadable.currentValue());
+            }
+            return Collections.unmodifiableList(values);
+        }, writeStamps(reloadables));
+    }
+
+    private static WriteStamp[] writeStamps(List<? extends Reloadable<?>> reloadables) {
+        WriteStamp[] stamps = new WriteStamp[reloadables.size()];
+        for (int i = 0; i < stamps.length; i++) {
+            Reloadable<?> reloadable = reloadables.get(i);
+            stamps[i] = reloadable.writeStamp;
+        }
+        return stamps;
+    }
+
+    private static int maxRank(Reloadable<?>... reloadables) {
+        int max = 0;
+        for (Reloadable<?> reloadable : reloadables) {
+            max = Math.max(max, reloadable.getRank());
+        }
+        return max;
+    }
+
 }
\ No newline at end of file
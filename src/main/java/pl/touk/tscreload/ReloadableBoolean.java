@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload;
+
+import java.util.function.Predicate;
+
+public class ReloadableBoolean extends PrimitiveReloadable<Boolean> {
+
+    private final Predicate<Object> f;
+
+    // written together with boxed current value
+    private volatile boolean value;
+
+    @SuppressWarnings("unchecked")
+    ReloadableBoolean(Object currentParentValue, int rank, Predicate<?> f) {
+        super(((Predicate<Object>) f).test(currentParentValue), currentParentValue, rank);
+        this.f = (Predicate<Object>) f;
+        this.value = currentValue();
+    }
+
+    public boolean getAsBoolean() {
+        return value;
+    }
+
+    @Override
+    Boolean transform(Object parentValue) {
+        boolean newValue = f.test(parentValue);
+        Boolean current = currentValue();
+        return newValue == current.booleanValue() ? current : Boolean.valueOf(newValue);
+    }
+
+    @Override
+    void currentValueWritten(Boolean newValue) {
+        value = newValue;
+    }
+
+}
@@ -16,47 +16,183 @@
 package pl.touk.tscreload;
 
 import io.vavr.Function1;
+import pl.touk.tscreload.impl.Instrumentation;
 import pl.touk.tscreload.impl.Observer;
+import pl.touk.tscreload.impl.ParserThreads;
 import pl.touk.tscreload.impl.ReloadableConfig;
+import pl.touk.tscreload.impl.ReloadableDirectory;
+import pl.touk.tscreload.impl.ReloadableSource;
 import pl.touk.tscreload.impl.Reloader;
 
 import java.io.File;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class ReloadableConfigFactory {
 
+    // check interval of tick observers which don't define own interval
     static final int TICK_SECONDS = 5;
 
-    private final static Reloader reloader = new Reloader(TICK_SECONDS);
+    static final Duration TICK_RESOLUTION = Duration.ofMillis(100);
+
+    private static volatile Reloader reloader = new Reloader(TICK_RESOLUTION);
+
+    public static <T> Reloadable<T> load(List<File> scannedFiles,
+                                         Duration checkInterval,
+                                         Supplier<T> loadConfig) {
+        return load(scannedFiles, checkInterval, ReloadOptions.DEFAULT, loadConfig);
+    }
 
     public static <T> Reloadable<T> load(List<File> scannedFiles,
                                          Duration checkInterval,
+                                         ReloadOptions options,
                                          Supplier<T> loadConfig) {
-        return load(scannedFiles, checkInterval,
+        return load(scannedFiles, checkInterval, options,
                 (prev) -> TransformationResult.withPropagateChangeWhenValueChanged(prev, loadConfig.get()));
     }
 
     public static <T> Reloadable<T> load(List<File> scannedFiles,
                                          Duration checkInterval,
                                          Function1<Optional<T>, TransformationResult<T>> transformConfig) {
-        ReloadableConfig<T> reloadableConfig = new ReloadableConfig<>(scannedFiles, checkInterval, transformConfig);
-        addTickObserver(reloadableConfig);
+        return load(scannedFiles, checkInterval, ReloadOptions.DEFAULT, transformConfig);
+    }
+
+    public static <T> Reloadable<T> load(List<File> scannedFiles,
+                                         Duration checkInterval,
+                                         ReloadOptions options,
+                                         Function1<Optional<T>, TransformationResult<T>> transformConfig) {
+        ReloadableConfig<T> reloadableConfig = new ReloadableConfig<>(scannedFiles, checkInterval, options, transformConfig);
+        // processes which don't lead shared reloads check published generation on ticks
+        if (!options.isWatchFiles() || !reloadableConfig.watchFiles() || options.getSharedDirectory() != null) {
+            addTickObserver(reloadableConfig);
+        }
         return reloadableConfig;
     }
+    // configuration from other source than local files, polled in check interval until it is closed
+    // configuration from other source than local files, polled in check interval
+    public static <T> TimeTriggeredReloadable<T> load(ConfigSource<T> source, Duration checkInterval) {
+        return load(source, checkInterval, ReloadOptions.DEFAULT);
+    }
+
+    public static <T> TimeTriggeredReloadable<T> load(ConfigSource<T> source, Duration checkInterval, ReloadOptions options) {
+        return addTickObserver(new ReloadableSource<>(source, checkInterval, options));
+    }
+
+    // initial parsing is done on executor from options or on shared parser threads, caller isn't blocked
+    public static <T> CompletableFuture<Reloadable<T>> loadAsync(List<File> scannedFiles,
+                                                                 Duration checkInterval,
+                                                                 ReloadOptions options,
+                                                                 Supplier<T> loadConfig) {
+        return CompletableFuture.supplyAsync(() -> load(scannedFiles, checkInterval, options, loadConfig),
+                bootstrapExecutor(options));
+    }
+
+    public static <T> CompletableFuture<Reloadable<T>> loadAsync(List<File> scannedFiles,
+                                                                 Duration checkInterval,
+                                                                 ReloadOptions options,
+                                                                 Function1<Optional<T>, TransformationResult<T>> transformConfig) {
+        return CompletableFuture.supplyAsync(() -> load(scannedFiles, checkInterval, options, transformConfig),
+                bootstrapExecutor(options));
+    }
+
+    // runs given loads in parallel, result is completed when all of them are loaded (in the same order)
+    // or exceptionally when any of them failed
+    public static <T> CompletableFuture<List<Reloadable<T>>> loadAll(List<? extends Supplier<? extends Reloadable<T>>> loads) {
+        return loadAll(loads, ParserThreads.loadExecutor());
+    }
+
+    public static <T> CompletableFuture<List<Reloadable<T>>> loadAll(List<? extends Supplier<? extends Reloadable<T>>> loads,
+                                                                     Executor executor) {
+        List<CompletableFuture<? extends Reloadable<T>>> loading = loads.stream()
+                .map(load -> CompletableFuture.supplyAsync(load, executor))
+                .collect(Collectors.toList());
+        return CompletableFuture.allOf(loading.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> loading.stream()
+                        .map(CompletableFuture::join)
+                        .collect(Collectors.toList()));
+    }
+
+    static Executor bootstrapExecutor(ReloadOptions options) {
+        return options.getExecutor() != null ? options.getExecutor() : ParserThreads.loadExecutor();
+    }
+
+    // values of files matching glob (e.g. "*.conf") by file name - only added and changed files are parsed again
+    public static <T> Reloadable<Map<String, T>> loadDirectory(File directory,
+                                                               String glob,
+                                                               Duration checkInterval,
+                                                               Function1<File, T> parseFile) {
+        return loadDirectory(directory, glob, checkInterval, ReloadOptions.DEFAULT, parseFile);
+    }
+
+    public static <T> Reloadable<Map<String, T>> loadDirectory(File directory,
+                                                               String glob,
+                                                               Duration checkInterval,
+                                                               ReloadOptions options,
+                                                               Function1<File, T> parseFile) {
+        ReloadableDirectory<T> reloadableDirectory = new ReloadableDirectory<>(directory.toPath(), glob, checkInterval,
+                options, path -> parseFile.apply(path.toFile()));
+        if (!options.isWatchFiles() || !reloadableDirectory.watchFiles()) {
+            addTickObserver(reloadableDirectory);
+        }
+        return reloadableDirectory;
+    }
 
     public static Reloadable<Instant> addTickPropagator(Duration checkInterval) {
-        TimeTriggeredReloadable<Instant> propagator = TimeTriggeredReloadable.propagatingTicks(Instant.now(), checkInterval);
+        TimeTriggeredReloadable<Instant> propagator = TimeTriggeredReloadable.propagatingTicks(now(), checkInterval);
         addTickObserver(propagator);
         return propagator;
     }
 
     public static <T extends Observer<Instant>> T addTickObserver(T observer) {
-        reloader.addWeakObserver(observer);
+        Duration checkInterval = observer instanceof TimeTriggeredReloadable ?
+                ((TimeTriggeredReloadable<?>) observer).getCheckInterval() :
+                Duration.ofSeconds(TICK_SECONDS);
+        return addTickObserver(observer, checkInterval);
+    }
+
+    // time triggered reloadables are added to reloader which was current when they were created
+    public static <T extends Observer<Instant>> T addTickObserver(T observer, Duration checkInterval) {
+        Reloader observerReloader = observer instanceof TimeTriggeredReloadable ?
+                ((TimeTriggeredReloadable<?>) observer).getReloader() :
+                reloader;
+        observerReloader.addWeakObserver(observer, checkInterval);
+        return observer;
+    }
+
+    public static <T extends Observer<Instant>> T addDelayedTickObserver(T observer, Duration delay) {
+        reloader.addWeakObserverOnce(observer, delay);
         return observer;
     }
 
+    // replaces reloader of reloadables created from now on, e.g. with one driven by VirtualClock in simulations.
+    // Reloadables created earlier keep previous reloader (its ticks, clock and delayed checks), which is returned
+    // and can be cancelled or restored
+    public static Reloader setReloader(Reloader newReloader) {
+        Reloader previous = reloader;
+        reloader = newReloader;
+        return previous;
+    }
+
+    // current time of clock of current reloader - existing reloadables use clocks of their own reloaders,
+    // see TimeTriggeredReloadable.now
+    public static Instant now() {
+        return reloader.now();
+    }
+
+    static Reloader reloader() {
+        return reloader;
+    }
+
+    // metrics for all reloadables - see JfrReloadMetrics for JDK Flight Recorder events
+    public static void setMetrics(ReloadMetrics metrics) {
+        Instrumentation.setMetrics(metrics);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload;
+
+import java.util.function.ToDoubleFunction;
+
+public class ReloadableDouble extends PrimitiveReloadable<Double> {
+
+    private final ToDoubleFunction<Object> f;
+
+    // written together with boxed current value
+    private volatile double value;
+
+    @SuppressWarnings("unchecked")
+    ReloadableDouble(Object currentParentValue, int rank, ToDoubleFunction<?> f) {
+        super(((ToDoubleFunction<Object>) f).applyAsDouble(currentParentValue), currentParentValue, rank);
+        this.f = (ToDoubleFunction<Object>) f;
+        this.value = currentValue();
+    }
+
+    public double getAsDouble() {
+        return value;
+    }
+
+    @Override
+    Double transform(Object parentValue) {
+        double newValue = f.applyAsDouble(parentValue);
+        Double current = currentValue();
+        return Double.compare(newValue, current) == 0 ? current : Double.valueOf(newValue);
+    }
+
+    @Override
+    void currentValueWritten(Double newValue) {
+        value = newValue;
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload;
+
+import java.util.function.ToIntFunction;
+
+public class ReloadableInt extends PrimitiveReloadable<Integer> {
+
+    private final ToIntFunction<Object> f;
+
+    // written together with boxed current value
+    private volatile int value;
+
+    @SuppressWarnings("unchecked")
+    ReloadableInt(Object currentParentValue, int rank, ToIntFunction<?> f) {
+        super(((ToIntFunction<Object>) f).applyAsInt(currentParentValue), currentParentValue, rank);
+        this.f = (ToIntFunction<Object>) f;
+        this.value = currentValue();
+    }
+
+    public int getAsInt() {
+        return value;
+    }
+
+    @Override
+    Integer transform(Object parentValue) {
+        int newValue = f.applyAsInt(parentValue);
+        Integer current = currentValue();
+        return newValue == current.intValue() ? current : Integer.valueOf(newValue);
+    }
+
+    @Override
+    void currentValueWritten(Integer newValue) {
+        value = newValue;
+    }
+
+}
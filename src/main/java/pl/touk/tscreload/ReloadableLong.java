@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload;
+
+import java.util.function.ToLongFunction;
+
+public class ReloadableLong extends PrimitiveReloadable<Long> {
+
+    private final ToLongFunction<Object> f;
+
+    // written together with boxed current value
+    private volatile long value;
+
+    @SuppressWarnings("unchecked")
+    ReloadableLong(Object currentParentValue, int rank, ToLongFunction<?> f) {
+        super(((ToLongFunction<Object>) f).applyAsLong(currentParentValue), currentParentValue, rank);
+        this.f = (ToLongFunction<Object>) f;
+        this.value = currentValue();
+    }
+
+    public long getAsLong() {
+        return value;
+    }
+
+    @Override
+    Long transform(Object parentValue) {
+        long newValue = f.applyAsLong(parentValue);
+        Long current = currentValue();
+        return newValue == current.longValue() ? current : Long.valueOf(newValue);
+    }
+
+    @Override
+    void currentValueWritten(Long newValue) {
+        value = newValue;
+    }
+
+}
@@ -19,6 +19,8 @@ import io.vavr.Function2;
 import lombok.extern.slf4j.Slf4j;
 import pl.touk.tscreload.impl.Observable;
 import pl.touk.tscreload.impl.Observer;
+import pl.touk.tscreload.impl.Reloader;
+import pl.touk.tscreload.impl.SerialExecutor;
 
 import java.time.Duration;
 import java.time.Instant;
@@ -26,9 +28,11 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
-public class TimeTriggeredReloadable<T> extends Reloadable<T> implements Observer<Instant> {
+public class TimeTriggeredReloadable<T> extends Reloadable<T> implements Observer<Instant>, AutoCloseable {
 
     private final Set<Observable<?>> parents = Collections.synchronizedSet(new HashSet<>());
 
@@ -36,20 +40,38 @@ public class TimeTriggeredReloadable<T> extends Reloadable<T> implements Observe
 
     private final Function2<Instant, Optional<T>, TransformationResult<T>> transform;
 
+    // null means that ticks are handled on thread that notified about them
+    private final SerialExecutor executor;
+
+    // latest tick not handled yet by executor - ticks arriving in meantime are coalesced
+    private final AtomicReference<Instant> pendingTick = new AtomicReference<>();
+
     // protected by synchronized block
     private Instant lastCheck;
 
+    // closed reloadable isn't checked anymore - see close()
+    private volatile boolean closed;
+
+    // reloader current during creation - ticks come from it, so its clock is used for all checks
+    private final Reloader reloader = ReloadableConfigFactory.reloader();
+
 
     public TimeTriggeredReloadable(T currentValue, Duration checkInterval,
                                    Function2<Instant, Optional<T>, TransformationResult<T>> transform) {
-        this(currentValue, Instant.now(), checkInterval, transform);
+        this(currentValue, ReloadableConfigFactory.now(), checkInterval, transform);
     }
 
     public TimeTriggeredReloadable(T currentValue, Instant currentTickValue, Duration checkInterval,
                                    Function2<Instant, Optional<T>, TransformationResult<T>> transform) {
+        this(currentValue, currentTickValue, checkInterval, null, transform);
+    }
+
+    public TimeTriggeredReloadable(T currentValue, Instant currentTickValue, Duration checkInterval, Executor executor,
+                                   Function2<Instant, Optional<T>, TransformationResult<T>> transform) {
         super(currentValue);
         this.lastCheck = currentTickValue;
         this.checkInterval = checkInterval;
+        this.executor = executor != null ? new SerialExecutor(executor) : null;
         this.transform = transform;
     }
 
@@ -59,9 +81,38 @@ public class TimeTriggeredReloadable<T> extends Reloadable<T> implements Observe
     }
 
     @Override
-    public synchronized void notifyChanged(Instant now) {
+    public void notifyChanged(Instant now) {
+        if (closed) {
+            return;
+        }
+        if (executor == null) {
+            handleTick(now);
+        } else if (pendingTick.getAndSet(now) == null) {
+            executor.execute(() -> {
+                try {
+                    handleTick(pendingTick.getAndSet(null));
+                } catch (Exception e) {
+                    // already logged in handleTick
+                }
+            });
+        }
+    }
+
+    // runs task on executor if given - tasks for the same reloadable are run one at a time in order of submission
+    protected void execute(Runnable task) {
+        if (executor == null) {
+            task.run();
+        } else {
+            executor.execute(task);
+        }
+    }
+
+    private synchronized void handleTick(Instant now) {
+        if (closed) {
+            return;
+        }
         log.trace("{} Saved last check: {}, now: {}, checkInterval: {}", this, lastCheck, now, checkInterval);
-        if (now.isAfter(lastCheck.plus(checkInterval))) {
+        if (!now.isBefore(lastCheck.plus(checkInterval))) {
             try {
                 handleTimeTrigger(now);
             } catch (Exception e) {
@@ -73,6 +124,34 @@ public class TimeTriggeredReloadable<T> extends Reloadable<T> implements Observe
         }
     }
 
+    // stops checks (e.g. polling of source which is not available anymore), current value is kept. Reloader drops
+    // closed reloadable on its next check
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public Duration getCheckInterval() {
+        return checkInterval;
+    }
+
+    Reloader getReloader() {
+        return reloader;
+    }
+
+    protected Instant now() {
+        return reloader.now();
+    }
+
+    // observer will be notified once by reloader of this reloadable, not earlier than after given delay
+    protected void addDelayedTickObserver(Observer<Instant> observer, Duration delay) {
+        reloader.addWeakObserverOnce(observer, delay);
+    }
+
     protected void handleTimeTrigger(Instant now) {
         updateCurrentValueWithTransformed(now);
     }
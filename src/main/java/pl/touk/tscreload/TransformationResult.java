@@ -15,21 +15,82 @@
  */
 package pl.touk.tscreload;
 
-import lombok.Value;
-
+import java.util.Objects;
 import java.util.Optional;
 
-@Value
-public class TransformationResult<T> {
+public final class TransformationResult<T> {
+
+    private final T value;
 
-    private T value;
+    // present when change is detected by comparison with previous value - it is done on first check, so reloadable
+    // with fingerprint (see Reloadable.fingerprinted) can compare values by fingerprints instead
+    private final Optional<T> comparedPrevValue;
 
     private boolean propagateChange;
 
+    private boolean propagateChangeComputed;
+
+    public TransformationResult(T value, boolean propagateChange) {
+        this.value = value;
+        this.comparedPrevValue = null;
+        this.propagateChange = propagateChange;
+        this.propagateChangeComputed = true;
+    }
+
+    private TransformationResult(T value, Optional<T> comparedPrevValue) {
+        this.value = value;
+        this.comparedPrevValue = comparedPrevValue;
+    }
+
     public static <U> TransformationResult<U> withPropagateChangeWhenValueChanged(Optional<U> optionalPrevValue, U newValue) {
-        return new TransformationResult<>(
-                newValue,
-                !optionalPrevValue.isPresent() || !newValue.equals(optionalPrevValue.get()));
+        return new TransformationResult<>(newValue, optionalPrevValue);
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public boolean isPropagateChange() {
+        if (!propagateChangeComputed) {
+            propagateChange = !comparedPrevValue.isPresent() || !valuesEqual(value, comparedPrevValue.get());
+            propagateChangeComputed = true;
+        }
+        return propagateChange;
+    }
+
+    // true when propagation of change depends only on comparison of value with previous one
+    boolean isComparedWithPrevValue() {
+        return comparedPrevValue != null;
+    }
+
+    static boolean valuesEqual(Object value, Object other) {
+        if (value instanceof Fingerprinted && other instanceof Fingerprinted &&
+                ((Fingerprinted) value).fingerprint() != ((Fingerprinted) other).fingerprint()) {
+            return false;
+        }
+        return Objects.equals(value, other);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TransformationResult)) {
+            return false;
+        }
+        TransformationResult<?> other = (TransformationResult<?>) o;
+        return isPropagateChange() == other.isPropagateChange() && Objects.equals(value, other.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(value, isPropagateChange());
+    }
+
+    @Override
+    public String toString() {
+        return "TransformationResult(value=" + value + ", propagateChange=" + isPropagateChange() + ")";
     }
 
-}
\ No newline at end of file
+}
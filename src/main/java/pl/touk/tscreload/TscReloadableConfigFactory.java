@@ -17,18 +17,70 @@ package pl.touk.tscreload;
 
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
+import pl.touk.tscreload.impl.ConfigPathRouter;
 
 import java.io.File;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class TscReloadableConfigFactory extends ReloadableConfigFactory {
 
     public static Reloadable<Config> parseFile(File file, Duration checkInterval) {
+        return parseFile(file, checkInterval, ReloadOptions.DEFAULT);
+    }
+
+    public static Reloadable<Config> parseFile(File file, Duration checkInterval, ReloadOptions options) {
         return load(
                 Collections.singletonList(file),
                 checkInterval,
+                options,
                 () -> ConfigFactory.parseFile(file));
     }
 
+    public static CompletableFuture<Reloadable<Config>> parseFileAsync(File file, Duration checkInterval,
+                                                                       ReloadOptions options) {
+        return loadAsync(Collections.singletonList(file), checkInterval, options, () -> ConfigFactory.parseFile(file));
+    }
+
+    // each file is parsed to separate config, files are parsed in parallel
+    public static CompletableFuture<List<Reloadable<Config>>> parseEachFileAsync(List<File> files, Duration checkInterval,
+                                                                                 ReloadOptions options) {
+        return loadAll(files.stream()
+                .map(file -> (Supplier<Reloadable<Config>>) () -> parseFile(file, checkInterval, options))
+                .collect(Collectors.toList()), bootstrapExecutor(options));
+    }
+
+    // config served over HTTP, checked by conditional requests
+    public static TimeTriggeredReloadable<Config> parseUrl(URI uri, Duration checkInterval) {
+        return parseUrl(uri, checkInterval, ReloadOptions.DEFAULT);
+    }
+
+    public static TimeTriggeredReloadable<Config> parseUrl(URI uri, Duration checkInterval, ReloadOptions options) {
+        return load(HttpConfigSource.of(uri, body -> ConfigFactory.parseReader(
+                new InputStreamReader(body, StandardCharsets.UTF_8))), checkInterval, options);
+    }
+
+    // configs of files matching glob (e.g. "*.conf") in directory by file name
+    public static Reloadable<Map<String, Config>> parseDirectory(File directory, String glob, Duration checkInterval) {
+        return parseDirectory(directory, glob, checkInterval, ReloadOptions.DEFAULT);
+    }
+
+    public static Reloadable<Map<String, Config>> parseDirectory(File directory, String glob, Duration checkInterval,
+                                                                 ReloadOptions options) {
+        return loadDirectory(directory, glob, checkInterval, options, ConfigFactory::parseFile);
+    }
+
+    // value is recomputed only when subtree at given path was changed, it contains only this subtree
+    public static Reloadable<Config> atPath(Reloadable<Config> config, String path) {
+        return ConfigPathRouter.atPath(config, path);
+    }
+
 }
\ No newline at end of file
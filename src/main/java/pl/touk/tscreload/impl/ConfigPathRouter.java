@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigObject;
+import com.typesafe.config.ConfigUtil;
+import com.typesafe.config.ConfigValue;
+import io.vavr.Function1;
+import lombok.extern.slf4j.Slf4j;
+import pl.touk.tscreload.Reloadable;
+import pl.touk.tscreload.TransformationResult;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.WeakHashMap;
+
+// Diffs previous and new config once per reload, walking only into subtrees that have subscribers,
+// and wakes only subscribers of changed paths.
+@Slf4j
+public class ConfigPathRouter extends AbstractObserver<Config> {
+
+    // routers are kept alive by their subscribers, see PathReloadable.router
+    private static final Map<Reloadable<Config>, WeakReference<ConfigPathRouter>> routers =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final int rank;
+
+    private final PathNode subscriptions = new PathNode();
+
+    // protected by synchronized block
+    private Config current;
+
+    private ConfigPathRouter(Reloadable<Config> config) {
+        this.rank = config.getRank() + 1;
+        this.current = config.currentValue();
+    }
+
+    public static Reloadable<Config> atPath(Reloadable<Config> config, String path) {
+        return routerFor(config).subscribe(path);
+    }
+
+    private static ConfigPathRouter routerFor(Reloadable<Config> config) {
+        synchronized (routers) {
+            WeakReference<ConfigPathRouter> reference = routers.get(config);
+            ConfigPathRouter router = reference != null ? reference.get() : null;
+            if (router == null) {
+                router = new ConfigPathRouter(config);
+                config.addWeakObserver(router);
+                routers.put(config, new WeakReference<>(router));
+            }
+            return router;
+        }
+    }
+
+    private synchronized Reloadable<Config> subscribe(String path) {
+        PathNode node = subscriptions;
+        for (String key : ConfigUtil.splitPath(path)) {
+            node = node.children.computeIfAbsent(key, k -> new PathNode());
+        }
+        PathReloadable subscriber = new PathReloadable(this, path, current.withOnlyPath(path), rank);
+        node.subscribers.add(new WeakReference<>(subscriber));
+        return subscriber;
+    }
+
+    @Override
+    public synchronized void notifyChanged(Config changedValue) {
+        Config prev = current;
+        current = changedValue;
+        diff(prev.root(), changedValue.root(), subscriptions);
+    }
+
+    // Returns true when change was found in subtree. Subtrees are compared by equals only at nodes having
+    // subscribers, other nodes just walk into their subscribed children. Empty branches are pruned.
+    private boolean diff(ConfigValue prev, ConfigValue next, PathNode node) {
+        boolean childChanged = false;
+        Iterator<Map.Entry<String, PathNode>> children = node.children.entrySet().iterator();
+        while (children.hasNext()) {
+            Map.Entry<String, PathNode> child = children.next();
+            ConfigValue prevChild = childValue(prev, child.getKey());
+            ConfigValue nextChild = childValue(next, child.getKey());
+            if (prevChild != nextChild && diff(prevChild, nextChild, child.getValue())) {
+                childChanged = true;
+            }
+            if (child.getValue().isEmpty()) {
+                children.remove();
+            }
+        }
+        node.subscribers.removeIf(reference -> reference.get() == null);
+        if (node.subscribers.isEmpty()) {
+            return childChanged;
+        }
+        boolean changed = childChanged || !Objects.equals(prev, next);
+        if (changed) {
+            for (WeakReference<PathReloadable> reference : node.subscribers) {
+                PathReloadable subscriber = reference.get();
+                if (subscriber != null) {
+                    subscriber.changed(current);
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static ConfigValue childValue(ConfigValue value, String key) {
+        return value instanceof ConfigObject ? ((ConfigObject) value).get(key) : null;
+    }
+
+    private static class PathNode {
+
+        private final Map<String, PathNode> children = new HashMap<>();
+
+        private final List<WeakReference<PathReloadable>> subscribers = new ArrayList<>();
+
+        private boolean isEmpty() {
+            return children.isEmpty() && subscribers.isEmpty();
+        }
+
+    }
+
+    private static class PathReloadable extends Reloadable<Config> implements Propagation.Node {
+
+        // hard reference to ensure that chain won't be breaked
+        private final ConfigPathRouter router;
+
+        private final String path;
+
+        // created once, so recomputation doesn't allocate capturing lambda on each update. Router wakes only
+        // subscribers of changed subtrees, so change is propagated without comparison
+        private final Function1<Optional<Config>, TransformationResult<Config>> recomputation;
+
+        // access to currentConfig is synchronized on this
+        private Config currentConfig;
+
+        private PathReloadable(ConfigPathRouter router, String path, Config current, int rank) {
+            super(current, rank);
+            this.router = router;
+            this.path = path;
+            this.recomputation = prev -> new TransformationResult<>(currentConfig.withOnlyPath(this.path), true);
+        }
+
+        private void changed(Config config) {
+            synchronized (this) {
+                currentConfig = config;
+            }
+            Propagation.schedule(this);
+        }
+
+        @Override
+        public synchronized void recompute() {
+            updateCurrentValue(recomputation);
+        }
+
+    }
+
+}
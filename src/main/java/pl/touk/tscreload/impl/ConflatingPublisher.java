@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import pl.touk.tscreload.Reloadable;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Publishes current value and then changes of reloadable. Each subscriber keeps only the latest value not delivered
+// yet, so slow subscriber skips intermediate values and propagation of changes never waits for subscribers.
+@Slf4j
+public class ConflatingPublisher<T> implements Flow.Publisher<T> {
+
+    private static final Object NONE = new Object();
+
+    // observers of reloadables are weak references - publishers are kept here until all subscriptions are cancelled
+    private static final Set<ConflatingPublisher<?>> subscribed = ConcurrentHashMap.newKeySet();
+
+    private final Reloadable<T> reloadable;
+
+    private final Executor executor;
+
+    private final CopyOnWriteArrayList<ConflatingSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private final Observer<T> changesObserver = new AbstractObserver<T>() {
+        @Override
+        public void notifyChanged(T value) {
+            for (ConflatingSubscription subscription : subscriptions) {
+                subscription.offer(value);
+            }
+        }
+    };
+
+    public ConflatingPublisher(Reloadable<T> reloadable, Executor executor) {
+        this.reloadable = reloadable;
+        this.executor = executor;
+        reloadable.addWeakObserver(changesObserver);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        ConflatingSubscription subscription = new ConflatingSubscription(subscriber);
+        synchronized (this) {
+            subscriptions.add(subscription);
+            subscribed.add(this);
+        }
+        // change notified after subscription was added is newer than current value - it isn't overwritten.
+        // Value can't be delivered before onSubscribe, because nothing was requested yet
+        subscription.pending.compareAndSet(NONE, reloadable.currentValue());
+        subscriber.onSubscribe(subscription);
+    }
+
+    private class ConflatingSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super T> subscriber;
+
+        // latest value not delivered yet or NONE
+        private final AtomicReference<Object> pending = new AtomicReference<>(NONE);
+
+        private final AtomicLong demand = new AtomicLong();
+
+        // number of requested drains - only one of them runs at the same time
+        private final AtomicInteger drains = new AtomicInteger();
+
+        private volatile boolean cancelled;
+
+        // signalled by drain, so it is never concurrent with onNext
+        private volatile Throwable failure;
+
+        private ConflatingSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        private void offer(T value) {
+            pending.set(value);
+            scheduleDrain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                failure = new IllegalArgumentException("Requested non-positive number of values: " + n);
+                scheduleDrain();
+                return;
+            }
+            demand.accumulateAndGet(n, (current, requested) -> {
+                long sum = current + requested;
+                return sum < 0 ? Long.MAX_VALUE : sum;
+            });
+            scheduleDrain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            synchronized (ConflatingPublisher.this) {
+                subscriptions.remove(this);
+                if (subscriptions.isEmpty()) {
+                    subscribed.remove(ConflatingPublisher.this);
+                }
+            }
+        }
+
+        private void scheduleDrain() {
+            if (drains.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void drain() {
+            int missed = 1;
+            do {
+                if (failure != null && !cancelled) {
+                    cancel();
+                    subscriber.onError(failure);
+                }
+                while (!cancelled && demand.get() > 0) {
+                    Object value = pending.getAndSet(NONE);
+                    if (value == NONE) {
+                        break;
+                    }
+                    demand.decrementAndGet();
+                    try {
+                        subscriber.onNext((T) value);
+                    } catch (Exception e) {
+                        log.error("Subscriber {} failed on value of {}, cancelling subscription", subscriber, reloadable, e);
+                        cancel();
+                    }
+                }
+                missed = drains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+    }
+
+}
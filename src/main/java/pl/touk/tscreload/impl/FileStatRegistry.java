@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl;
+
+import lombok.Value;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Process-wide registry of scanned files. Each distinct path is checked once per check cycle (identified by tick time)
+// no matter how many reloadables scan it. Entries are kept as long as some reloadable holds them.
+public class FileStatRegistry {
+
+    private static final ConcurrentMap<Path, StatReference> stats = new ConcurrentHashMap<>();
+
+    private static final ReferenceQueue<FileStat> collectedStats = new ReferenceQueue<>();
+
+    private FileStatRegistry() {
+    }
+
+    public static FileStat forPath(Path path) {
+        expungeCollectedStats();
+        while (true) {
+            StatReference reference = stats.get(path);
+            FileStat stat = reference != null ? reference.get() : null;
+            if (stat != null) {
+                return stat;
+            }
+            FileStat created = new FileStat(path);
+            StatReference createdReference = new StatReference(created, collectedStats);
+            boolean registered = reference == null ?
+                    stats.putIfAbsent(path, createdReference) == null :
+                    stats.replace(path, reference, createdReference);
+            if (registered) {
+                return created;
+            }
+        }
+    }
+
+    private static void expungeCollectedStats() {
+        StatReference reference;
+        while ((reference = (StatReference) collectedStats.poll()) != null) {
+            stats.remove(reference.path, reference);
+        }
+    }
+
+    public static class FileStat {
+
+        private final Path path;
+
+        // protected by synchronized block
+        private Instant checkCycle;
+
+        private State state;
+
+        private long reads;
+
+        private FileStat(Path path) {
+            this.path = path;
+        }
+
+        public synchronized State check(Instant cycle) {
+            if (!cycle.equals(checkCycle)) {
+                state = readState();
+                checkCycle = cycle;
+                reads++;
+            }
+            return state;
+        }
+
+        synchronized long reads() {
+            return reads;
+        }
+
+        private State readState() {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                // identity of file which link points to - swap of symlink target is a change even if the new target
+                // has the same modification time and length
+                Object fileKey = attributes.fileKey() != null ? attributes.fileKey() : path.toRealPath();
+                return new State(attributes.lastModifiedTime().toInstant(), attributes.size(), fileKey);
+            } catch (NoSuchFileException e) {
+                return new State(Instant.EPOCH, 0, null);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error while checking state of file: " + path, e);
+            }
+        }
+
+    }
+
+    @Value
+    public static class State {
+
+        private Instant lastModified;
+
+        private long length;
+
+        private Object fileKey;
+
+    }
+
+    private static class StatReference extends WeakReference<FileStat> {
+
+        private final Path path;
+
+        private StatReference(FileStat stat, ReferenceQueue<FileStat> queue) {
+            super(stat, queue);
+            this.path = stat.path;
+        }
+
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+@Slf4j
+public class FileWatcher {
+
+    private static final long SETTLE_MILLIS = 50;
+
+    private static final long MAX_SETTLE_MILLIS = 1000;
+
+    private static final long RELEASE_INTERVAL_MILLIS = 10000;
+
+    private final WatchService watchService;
+
+    private final ConcurrentMap<Path, DirectoryChanges> directories = new ConcurrentHashMap<>();
+
+    private FileWatcher(WatchService watchService) {
+        this.watchService = watchService;
+        Thread thread = new Thread(this::processEvents, "tsc-reload-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static boolean watch(Path directory, Observer<Change> observer) {
+        return watch(Collections.singletonList(directory), observer);
+    }
+
+    // observer is registered for all directories or for none of them - when some of them can't be watched,
+    // periodical checks are used instead, so watching the others would only double checks
+    public static boolean watch(List<Path> directories, Observer<Change> observer) {
+        return Holder.INSTANCE
+                .map(watcher -> watcher.register(directories, observer))
+                .orElse(false);
+    }
+
+    private boolean register(List<Path> watchedDirectories, Observer<Change> observer) {
+        List<Path> registered = new ArrayList<>();
+        for (Path directory : watchedDirectories) {
+            try {
+                directories.compute(directory, (path, changes) -> {
+                    DirectoryChanges observed = changes != null ? changes : registerDirectory(path);
+                    observed.addWeakObserver(observer);
+                    return observed;
+                });
+                registered.add(directory);
+            } catch (UncheckedIOException | UnsupportedOperationException | ClosedWatchServiceException e) {
+                log.warn("Can't watch directory {}, changes will be checked periodically", directory, e);
+                registered.forEach(path -> unregister(path, observer));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void unregister(Path directory, Observer<Change> observer) {
+        directories.computeIfPresent(directory, (path, changes) -> {
+            changes.removeObserver(observer);
+            return releaseIfUnobserved(path, changes);
+        });
+    }
+
+    private DirectoryChanges registerDirectory(Path directory) {
+        try {
+            WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            log.debug("Registered directory {} in watch service", directory);
+            return new DirectoryChanges(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // directories of collected reloadables are unregistered, so watch keys don't pile up
+    void releaseUnobservedDirectories() {
+        directories.keySet().forEach(directory -> directories.computeIfPresent(directory, this::releaseIfUnobserved));
+    }
+
+    // returns null, so directory is removed from map, when nobody observes it
+    private DirectoryChanges releaseIfUnobserved(Path directory, DirectoryChanges changes) {
+        if (changes.getObserversCount() > 0) {
+            return changes;
+        }
+        changes.key.cancel();
+        log.debug("Unregistered directory {} from watch service", directory);
+        return null;
+    }
+
+    boolean isWatched(Path directory) {
+        return directories.containsKey(directory);
+    }
+
+    private void processEvents() {
+        try {
+            long nextRelease = System.currentTimeMillis() + RELEASE_INTERVAL_MILLIS;
+            while (true) {
+                // changes are collected until directories settle down to not notify about partially written files
+                Map<DirectoryChanges, Set<Change>> pending = new LinkedHashMap<>();
+                WatchKey key = watchService.poll(RELEASE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                long settleDeadline = System.currentTimeMillis() + MAX_SETTLE_MILLIS;
+                while (key != null) {
+                    collectChanges(key, pending);
+                    key = System.currentTimeMillis() < settleDeadline ?
+                            watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS) : null;
+                }
+                pending.forEach((changes, changed) -> changed.forEach(changes::notifyObservers));
+                if (System.currentTimeMillis() >= nextRelease) {
+                    releaseUnobservedDirectories();
+                    nextRelease = System.currentTimeMillis() + RELEASE_INTERVAL_MILLIS;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            log.debug("Watch service closed");
+        }
+    }
+
+    private void collectChanges(WatchKey key, Map<DirectoryChanges, Set<Change>> pending) {
+        Path directory = (Path) key.watchable();
+        DirectoryChanges changes = directories.get(directory);
+        List<WatchEvent<?>> events = key.pollEvents();
+        boolean valid = key.reset();
+        if (changes == null) {
+            return;
+        }
+        Set<Change> changed = pending.computeIfAbsent(changes, c -> new LinkedHashSet<>());
+        for (WatchEvent<?> event : events) {
+            if (event.kind() == OVERFLOW) {
+                changed.add(new Change(null, false));
+            } else {
+                changed.add(new Change(directory.resolve((Path) event.context()), false));
+            }
+        }
+        if (!valid) {
+            log.warn("Watch key for directory {} is no longer valid", directory);
+            directories.remove(directory);
+            changed.add(new Change(null, true));
+        }
+    }
+
+    @Value
+    public static class Change {
+
+        // null means that any file in directory could be changed
+        private Path path;
+
+        private boolean watchCancelled;
+
+    }
+
+    private static class DirectoryChanges extends Observable<Change> {
+
+        private final WatchKey key;
+
+        private DirectoryChanges(WatchKey key) {
+            this.key = key;
+        }
+
+    }
+
+    static Optional<FileWatcher> instance() {
+        return Holder.INSTANCE;
+    }
+
+    private static class Holder {
+
+        private static final Optional<FileWatcher> INSTANCE = create();
+
+        private static Optional<FileWatcher> create() {
+            try {
+                return Optional.of(new FileWatcher(FileSystems.getDefault().newWatchService()));
+            } catch (IOException | UnsupportedOperationException e) {
+                log.warn("Watch service is not available, changes will be checked periodically", e);
+                return Optional.empty();
+            }
+        }
+
+    }
+
+}
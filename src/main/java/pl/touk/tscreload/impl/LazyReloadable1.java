@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl;
+
+import io.vavr.Function2;
+import pl.touk.tscreload.Reloadable;
+import pl.touk.tscreload.TransformationResult;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+// Value is computed on first read after parent was changed. Invalidation is pushed to lazy children, so read of
+// clean value needs only one volatile read. When there are eager observers, value is recomputed eagerly for them.
+public class LazyReloadable1<P, C> extends Reloadable<C> implements Observer<P>, Invalidatable, Propagation.Node {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<LazyReloadable1, Object> STATE =
+            AtomicReferenceFieldUpdater.newUpdater(LazyReloadable1.class, Object.class, "state");
+
+    private final Set<Observable<?>> parents = Collections.synchronizedSet(new HashSet<>());
+
+    private final Reloadable<P> parent;
+
+    private final Function2<P, Optional<C>, TransformationResult<C>> transform;
+
+    // Computed or Dirty - each invalidation sets new Dirty instance so computation done in meantime won't be saved
+    private volatile Object state = new Dirty();
+
+    // protected by synchronized block, -1 means that value wasn't computed yet
+    private long computedParentVersion = -1;
+
+    public LazyReloadable1(Reloadable<P> parent, int rank, Function2<P, Optional<C>, TransformationResult<C>> transform) {
+        super(null, rank);
+        this.parent = parent;
+        this.transform = transform;
+    }
+
+    @Override
+    public void addParent(Observable<?> observable) {
+        parents.add(observable);
+    }
+
+    @Override
+    public void notifyChanged(P parentValue) {
+        invalidate();
+    }
+
+    @Override
+    public void invalidate() {
+        Object prev = STATE.getAndSet(this, new Dirty());
+        if (prev instanceof Computed && invalidateObservers()) {
+            Propagation.schedule(this);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public C currentValue() {
+        Object current = state;
+        if (current instanceof Computed) {
+            return ((Computed<C>) current).value;
+        }
+        return compute();
+    }
+
+    @Override
+    public void recompute() {
+        compute();
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized C compute() {
+        while (true) {
+            Object observed = state;
+            if (observed instanceof Computed) {
+                return ((Computed<C>) observed).value;
+            }
+            // lazy parent brings its value (and version) up to date only during read, so version is read around it
+            long versionBefore = parent.getVersion();
+            P parentValue = parent.currentValue();
+            long parentVersion = parent.getVersion();
+            if (parentVersion != versionBefore) {
+                continue;
+            }
+            if (parentVersion != computedParentVersion) {
+                updateCurrentValue(prev -> transform.apply(parentValue, prev));
+                computedParentVersion = parentVersion;
+            }
+            Computed<C> computed = new Computed<>(super.currentValue());
+            if (STATE.compareAndSet(this, observed, computed)) {
+                return computed.value;
+            }
+        }
+    }
+
+    private static class Computed<C> {
+
+        private final C value;
+
+        private Computed(C value) {
+            this.value = value;
+        }
+
+    }
+
+    private static class Dirty {
+    }
+
+}
@@ -16,40 +16,136 @@
 package pl.touk.tscreload.impl;
 
 import lombok.extern.slf4j.Slf4j;
+import pl.touk.tscreload.ReloadMetrics;
 
-import java.util.Collections;
-import java.util.Set;
-import java.util.WeakHashMap;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 public abstract class Observable<T> {
 
-    private final Set<Observer<T>> observers = Collections.newSetFromMap(new WeakHashMap<>());
+    // copy on write array - notification iterates over snapshot so adding observers never waits for propagation
+    private final AtomicReference<WeakReference<Observer<T>>[]> observers = new AtomicReference<>(newArray(0));
+
+    private final ReferenceQueue<Observer<T>> collectedObservers = new ReferenceQueue<>();
 
     public void addWeakObserver(Observer<T> observer) {
-        synchronized (observers) {
-            // We are adding hard reference to ensure that chain won't be breaked
-            observer.addParent(this);
-            observers.add(observer);
-            if (!observers.isEmpty()) {
-                log.trace("{} Added observer {}. Current observer count: {}", this, observer, observers.size());
+        // We are adding hard reference to ensure that chain won't be breaked
+        observer.addParent(this);
+        expungeCollectedObservers();
+        WeakReference<Observer<T>> reference = new WeakReference<>(observer, collectedObservers);
+        WeakReference<Observer<T>>[] prev;
+        WeakReference<Observer<T>>[] next;
+        do {
+            prev = observers.get();
+            if (contains(prev, observer)) {
+                return;
             }
-        }
+            next = Arrays.copyOf(prev, prev.length + 1);
+            next[prev.length] = reference;
+        } while (!observers.compareAndSet(prev, next));
+        log.trace("{} Added observer {}. Current observer count: {}", this, observer, next.length);
+        reportObserversCount(next.length);
     }
 
     protected void notifyObservers(T changedValue) {
-        synchronized (observers) {
-            if (!observers.isEmpty()) {
-                log.trace("{} Notifying {} observers...", this, observers.size());
-            }
-            observers.forEach(o -> {
+        expungeCollectedObservers();
+        WeakReference<Observer<T>>[] snapshot = observers.get();
+        if (snapshot.length > 0) {
+            log.trace("{} Notifying {} observers...", this, snapshot.length);
+        }
+        Propagation propagation = Propagation.start();
+        try {
+            for (WeakReference<Observer<T>> reference : snapshot) {
+                Observer<T> observer = reference.get();
+                if (observer == null) {
+                    continue;
+                }
                 try {
-                    o.notifyChanged(changedValue);
+                    observer.notifyChanged(changedValue);
                 } catch (Exception ex) {
                     log.error("Exception while notify about changed value. Propagation of changes for child nodes will be discarded.", ex);
+                    Instrumentation.metrics().notificationFailed(this, ex);
                 }
-            });
+            }
+        } finally {
+            Propagation.finish(propagation);
+        }
+    }
+
+    // removes observer compared by identity, e.g. when registration of reloadable failed part-way
+    void removeObserver(Observer<T> observer) {
+        WeakReference<Observer<T>>[] prev;
+        WeakReference<Observer<T>>[] next;
+        do {
+            prev = observers.get();
+            next = Arrays.stream(prev)
+                    .filter(reference -> reference.get() != null && reference.get() != observer)
+                    .toArray(Observable::newArray);
+        } while (!observers.compareAndSet(prev, next));
+        reportObserversCount(next.length);
+    }
+
+    // invalidates observers that don't need changed value, returns true if there are other observers
+    protected boolean invalidateObservers() {
+        boolean anyNotInvalidatable = false;
+        for (WeakReference<Observer<T>> reference : observers.get()) {
+            Observer<T> observer = reference.get();
+            if (observer instanceof Invalidatable) {
+                ((Invalidatable) observer).invalidate();
+            } else if (observer != null) {
+                anyNotInvalidatable = true;
+            }
         }
+        return anyNotInvalidatable;
+    }
+
+    public int getObserversCount() {
+        expungeCollectedObservers();
+        return observers.get().length;
+    }
+
+    private void expungeCollectedObservers() {
+        boolean anyCollected = false;
+        while (collectedObservers.poll() != null) {
+            anyCollected = true;
+        }
+        if (!anyCollected) {
+            return;
+        }
+        WeakReference<Observer<T>>[] prev;
+        WeakReference<Observer<T>>[] next;
+        do {
+            prev = observers.get();
+            next = Arrays.stream(prev)
+                    .filter(reference -> reference.get() != null)
+                    .toArray(Observable::newArray);
+        } while (!observers.compareAndSet(prev, next));
+        reportObserversCount(next.length);
+    }
+
+    private void reportObserversCount(int observersCount) {
+        ReloadMetrics metrics = Instrumentation.metrics();
+        if (metrics != ReloadMetrics.NOOP) {
+            metrics.observersCountChanged(this, observersCount);
+        }
+    }
+
+    private static <T> boolean contains(WeakReference<Observer<T>>[] references, Observer<T> observer) {
+        for (Reference<Observer<T>> reference : references) {
+            if (reference.get() == observer) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> WeakReference<Observer<T>>[] newArray(int length) {
+        return (WeakReference<Observer<T>>[]) new WeakReference<?>[length];
     }
 
-}
\ No newline at end of file
+}
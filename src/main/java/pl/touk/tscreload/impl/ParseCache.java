@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputFilter;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+// Values parsed from scanned files, serialized on disk. Entry is named by digest of paths of scanned files and cache
+// key followed by digest of files content, so it is used only when content of files is the same as during parsing.
+@Slf4j
+public class ParseCache {
+
+    private static final String SUFFIX = ".ser";
+
+    private final Path directory;
+
+    private final String prefix;
+
+    private final ObjectInputFilter filter;
+
+    private ParseCache(Path directory, String prefix, ObjectInputFilter filter) {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.filter = filter;
+    }
+
+    public static ParseCache forFiles(File directory, String cacheKey, List<File> scannedFiles, ObjectInputFilter filter) {
+        return new ParseCache(directory.toPath(), SerializedValues.filesPrefix(cacheKey, scannedFiles) + "-", filter);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Optional<T> load(byte[] contentDigest) {
+        Path entry = entryPath(contentDigest);
+        if (!Files.isRegularFile(entry)) {
+            return Optional.empty();
+        }
+        try {
+            T value = (T) SerializedValues.read(entry, filter);
+            log.debug("Loaded parsed value from cache entry {}", entry);
+            return Optional.of(value);
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            log.warn("Can't load cache entry {}, files will be parsed", entry, e);
+            return Optional.empty();
+        }
+    }
+
+    // entry is written atomically, entries for previous content of the same files are removed
+    public void store(byte[] contentDigest, Object value) {
+        Path entry = entryPath(contentDigest);
+        try {
+            SerializedValues.write(entry, value);
+            removeOtherEntries(entry);
+            log.debug("Stored parsed value in cache entry {}", entry);
+        } catch (NotSerializableException e) {
+            log.warn("Parsed value is not serializable, it won't be cached: {}", e.getMessage());
+        } catch (IOException e) {
+            log.warn("Can't store cache entry {}", entry, e);
+        }
+    }
+
+    private void removeOtherEntries(Path entry) throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, prefix + "*" + SUFFIX)) {
+            for (Path other : entries) {
+                if (!other.equals(entry)) {
+                    Files.deleteIfExists(other);
+                }
+            }
+        }
+    }
+
+    private Path entryPath(byte[] contentDigest) {
+        return directory.resolve(prefix + SerializedValues.toHex(contentDigest) + SUFFIX);
+    }
+
+}
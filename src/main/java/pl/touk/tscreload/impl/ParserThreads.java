@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Shared pool of daemon threads for loading and parsing of configurations when executor is not given. Threads are
+// created on demand, so parser which hangs after it was abandoned holds only its own thread and other parses get
+// new ones. Number of such hanging parsers is limited - when it is reached, next parses are rejected instead of
+// creating threads without end. Initial loads are never rejected.
+@Slf4j
+public class ParserThreads {
+
+    static final int MAX_HANGING_PARSERS = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+
+    private static final ThreadPoolExecutor POOL = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "tsc-reload-parser");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // abandoned parses which didn't finish yet
+    private static final AtomicInteger hangingParsers = new AtomicInteger();
+
+    private static final Executor PARSE_EXECUTOR = task -> {
+        int hanging = hangingParsers.get();
+        if (hanging >= MAX_HANGING_PARSERS) {
+            throw new RejectedExecutionException("Too many abandoned parsers are still running: " + hanging);
+        }
+        POOL.execute(task);
+    };
+
+    private ParserThreads() {
+    }
+
+    public static Executor loadExecutor() {
+        return POOL;
+    }
+
+    public static Executor parseExecutor() {
+        return PARSE_EXECUTOR;
+    }
+
+    static void parseAbandoned() {
+        int hanging = hangingParsers.incrementAndGet();
+        if (hanging >= MAX_HANGING_PARSERS) {
+            log.warn("{} abandoned parsers are still running, next parses will be rejected until some of them finish",
+                    hanging);
+        }
+    }
+
+    static void abandonedParseFinished() {
+        hangingParsers.decrementAndGet();
+    }
+
+}
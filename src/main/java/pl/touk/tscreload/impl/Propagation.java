@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import pl.touk.tscreload.ReloadMetrics;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// Changes are propagated in waves. Nodes affected by change are recomputed once per wave, in order of their ranks
+// (rank of node is greater than ranks of all its parents) so all of their parents are already updated.
+@Slf4j
+public class Propagation {
+
+    // one instance per thread is reused by consecutive waves, so starting of wave doesn't allocate
+    private static final ThreadLocal<Propagation> CURRENT = ThreadLocal.withInitial(Propagation::new);
+
+    private static final int SPINS_BEFORE_YIELD = 100;
+
+    private static final int YIELDS_BEFORE_PARK = 100;
+
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final PriorityQueue<Node> queue = new PriorityQueue<>(Comparator.comparingInt(Node::getRank));
+
+    private final Set<Node> scheduled = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // stamps of values written in this wave, they are finished with the wave
+    private final Set<WriteStamp> written = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private boolean active;
+
+    private long startNanos;
+
+    private int recomputedNodes;
+
+    private int failedNodes;
+
+    private Propagation() {
+    }
+
+    // starts new wave or returns null if this thread is already in wave - then changes will be propagated
+    // in current one. Each non null result have to be passed to finish
+    public static Propagation start() {
+        Propagation propagation = CURRENT.get();
+        if (propagation.active) {
+            return null;
+        }
+        propagation.active = true;
+        propagation.startNanos = Instrumentation.metrics() != ReloadMetrics.NOOP ? System.nanoTime() : 0;
+        propagation.recomputedNodes = 0;
+        propagation.failedNodes = 0;
+        return propagation;
+    }
+
+    public static void finish(Propagation propagation) {
+        if (propagation == null) {
+            return;
+        }
+        try {
+            propagation.drain();
+        } finally {
+            propagation.queue.clear();
+            propagation.scheduled.clear();
+            propagation.active = false;
+            for (WriteStamp stamp : propagation.written) {
+                stamp.finishWave();
+            }
+            propagation.written.clear();
+        }
+        ReloadMetrics metrics = Instrumentation.metrics();
+        if (metrics != ReloadMetrics.NOOP && propagation.startNanos != 0 && propagation.recomputedNodes > 0) {
+            metrics.propagated(propagation.recomputedNodes, propagation.failedNodes, System.nanoTime() - propagation.startNanos);
+        }
+    }
+
+    public static void schedule(Node node) {
+        Propagation current = CURRENT.get();
+        if (current.active) {
+            current.add(node);
+        } else {
+            Propagation propagation = start();
+            propagation.add(node);
+            finish(propagation);
+        }
+    }
+
+    // has to be invoked in wave before value is written
+    public static void startWrite(WriteStamp stamp) {
+        Propagation current = CURRENT.get();
+        if (!current.active) {
+            throw new IllegalStateException("Value can be written only in wave of propagation");
+        }
+        // wave is counted before write, so reader which saw old number of writes will see wave in progress
+        if (current.written.add(stamp)) {
+            stamp.startWave();
+        }
+        stamp.written();
+    }
+
+    // Reads values which are results of completed waves, like seqlock: read is repeated when wave which writes
+    // some of read values is in progress or some of them were written in the meantime. Only waves writing given
+    // stamps are awaited, so waves in unrelated graphs don't delay read. Reads invoked during wave
+    // (e.g. by transformations) see values from this wave.
+    public static <T> T readConsistently(Supplier<T> read, WriteStamp... stamps) {
+        if (CURRENT.get().active) {
+            return read.get();
+        }
+        long[] writes = new long[stamps.length];
+        int attempts = 0;
+        while (true) {
+            if (noneWriteInProgress(stamps, writes)) {
+                T result = read.get();
+                if (noneWritten(stamps, writes)) {
+                    return result;
+                }
+            }
+            backOff(++attempts);
+        }
+    }
+
+    // number of writes is read before waves in progress - see startWrite
+    private static boolean noneWriteInProgress(WriteStamp[] stamps, long[] writes) {
+        for (int i = 0; i < stamps.length; i++) {
+            writes[i] = stamps[i].writes();
+            if (stamps[i].writtenByWaveInProgress()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean noneWritten(WriteStamp[] stamps, long[] writes) {
+        for (int i = 0; i < stamps.length; i++) {
+            if (stamps[i].writes() != writes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // busy waiting is bounded - long waves (e.g. slow transformations) are awaited by parking
+    private static void backOff(int attempts) {
+        if (attempts < SPINS_BEFORE_YIELD) {
+            Thread.onSpinWait();
+        } else if (attempts < SPINS_BEFORE_YIELD + YIELDS_BEFORE_PARK) {
+            Thread.yield();
+        } else {
+            int parks = attempts - SPINS_BEFORE_YIELD - YIELDS_BEFORE_PARK;
+            LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << Math.min(parks, 20)));
+        }
+    }
+
+    private void add(Node node) {
+        if (scheduled.add(node)) {
+            queue.add(node);
+        }
+    }
+
+    private void drain() {
+        Node node;
+        while ((node = queue.poll()) != null) {
+            scheduled.remove(node);
+            recomputedNodes++;
+            try {
+                node.recompute();
+            } catch (Exception ex) {
+                failedNodes++;
+                log.error("Exception while recomputing value. Propagation of changes for child nodes will be discarded.", ex);
+            }
+        }
+    }
+
+    public interface Node {
+
+        int getRank();
+
+        void recompute();
+
+    }
+
+}
@@ -15,6 +15,7 @@
  */
 package pl.touk.tscreload.impl;
 
+import io.vavr.Function1;
 import io.vavr.Function2;
 import pl.touk.tscreload.Reloadable;
 import pl.touk.tscreload.TransformationResult;
@@ -24,17 +25,38 @@ import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
 
-public class Reloadable1<P, C> extends Reloadable<C> implements Observer<P> {
+public class Reloadable1<P, C> extends Reloadable<C> implements Observer<P>, Propagation.Node {
 
     private final Set<Observable<?>> parents = Collections.synchronizedSet(new HashSet<>());
 
+    // exactly one of transform and valueTransform is given
     private final Function2<P, Optional<C>, TransformationResult<C>> transform;
 
-    public Reloadable1(P currentParentValue, Function2<P, Optional<C>, TransformationResult<C>> transform) {
+    private final Function1<P, C> valueTransform;
+
+    // created once, so recomputation doesn't allocate capturing lambda on each update
+    private final Function1<Optional<C>, TransformationResult<C>> recomputation;
+
+    // access to currentParentValue is synchronized on this
+    private P currentParentValue;
+
+    public Reloadable1(P currentParentValue, int rank, Function2<P, Optional<C>, TransformationResult<C>> transform) {
         super(transform.apply(
                 currentParentValue,
-                Optional.empty()).getValue());
+                Optional.empty()).getValue(), rank);
         this.transform = transform;
+        this.valueTransform = null;
+        this.recomputation = prev -> this.transform.apply(this.currentParentValue, prev);
+        this.currentParentValue = currentParentValue;
+    }
+
+    // change is propagated only when transformed value is not equal to previous one
+    public Reloadable1(P currentParentValue, int rank, Function1<P, C> valueTransform) {
+        super(valueTransform.apply(currentParentValue), rank);
+        this.transform = null;
+        this.valueTransform = valueTransform;
+        this.recomputation = null;
+        this.currentParentValue = currentParentValue;
     }
 
     @Override
@@ -44,7 +66,19 @@ public class Reloadable1<P, C> extends Reloadable<C> implements Observer<P> {
 
     @Override
     public void notifyChanged(P parentValue) {
-        updateCurrentValue(transform.apply(parentValue));
+        synchronized (this) {
+            currentParentValue = parentValue;
+        }
+        Propagation.schedule(this);
+    }
+
+    @Override
+    public synchronized void recompute() {
+        if (valueTransform != null) {
+            updateCurrentValue(valueTransform, currentParentValue);
+        } else {
+            updateCurrentValue(recomputation);
+        }
     }
 
 }
\ No newline at end of file
@@ -17,14 +17,25 @@ package pl.touk.tscreload.impl;
 
 import io.vavr.Function1;
 import lombok.extern.slf4j.Slf4j;
+import pl.touk.tscreload.ReloadMetrics;
+import pl.touk.tscreload.ReloadOptions;
+import pl.touk.tscreload.ReloadableConfigFactory;
 import pl.touk.tscreload.TimeTriggeredReloadable;
 import pl.touk.tscreload.TransformationResult;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -32,41 +43,439 @@ public class ReloadableConfig<T> extends TimeTriggeredReloadable<T> {
 
     private final List<File> scannedFiles;
 
+    private final Set<Path> scannedPaths;
+
+    private final List<FileStatRegistry.FileStat> fileStats;
+
+    // directories of scanned files which are symbolic links - link can be swapped by change of other entry in
+    // directory (e.g. ..data link in Kubernetes ConfigMap volume) so each change in them is checked
+    private final Set<Path> symlinkDirectories;
+
+    private final boolean contentHash;
+
+    private final Duration quietPeriod;
+
+    private final Function1<Optional<T>, TransformationResult<T>> transformConfig;
+
+    // null means that parsed values are not cached on disk
+    private final ParseCache parseCache;
+
+    // null means that reloads are not shared with other processes
+    private final SharedReload sharedReload;
+
+    // generation of shared value which was loaded last time by the process which doesn't lead reloads
+    private long sharedGeneration;
+
+    // null means that configuration is parsed synchronously during check
+    private final Executor parserExecutor;
+
+    // null means that parsing in background is never abandoned
+    private final Duration parseTimeout;
+
+    // protected by synchronized block, only one parse is running at the same time
+    private BackgroundParse backgroundParse;
+
+    // change noticed during parse in background, it is checked again after parse
+    private boolean changedDuringParse;
+
     // protected by synchronized block - see TimeTriggeredReloadable.notifyChanged
-    private Instant savedLastModified;
+    private List<FileStatRegistry.State> savedFileStates;
+
+    private byte[] savedDigest;
+
+    // state of files found by last check, saved after successful reload
+    private List<FileStatRegistry.State> checkedFileStates;
+
+    private byte[] checkedDigest;
+
+    private boolean checkedPeriodically;
+
+    // changed state of files which is waiting for the end of quiet period
+    private List<FileStatRegistry.State> pendingFileStates;
+
+    private Instant pendingSince;
+
+    // at most one check at the end of quiet period is scheduled at the same time
+    private boolean quietPeriodCheckScheduled;
+
+    private final Observer<Instant> quietPeriodObserver = new AbstractObserver<Instant>() {
+        @Override
+        public void notifyChanged(Instant tick) {
+            execute(() -> handleQuietPeriodElapsed());
+        }
+    };
+
+    private final Observer<FileWatcher.Change> fileChangesObserver = new AbstractObserver<FileWatcher.Change>() {
+        @Override
+        public void notifyChanged(FileWatcher.Change change) {
+            execute(() -> handleFileChange(change));
+        }
+    };
 
     public ReloadableConfig(List<File> scannedFiles, Duration checkInterval,
                             Function1<Optional<T>, TransformationResult<T>> transformConfig) {
-        super(transformConfig.apply(Optional.empty()).getValue(), Instant.now(), checkInterval,
-                (now, prev) -> transformConfig.apply(prev));
+        this(scannedFiles, checkInterval, ReloadOptions.DEFAULT, transformConfig);
+    }
+
+    public ReloadableConfig(List<File> scannedFiles, Duration checkInterval, ReloadOptions options,
+                            Function1<Optional<T>, TransformationResult<T>> transformConfig) {
+        this(scannedFiles, checkInterval, options, ReloadableConfigFactory.now(), transformConfig,
+                options.getCacheDirectory() != null ?
+                        ParseCache.forFiles(options.getCacheDirectory(), options.getCacheKey(), scannedFiles,
+                                options.getSerialFilter()) :
+                        null,
+                options.getSharedDirectory() != null ?
+                        SharedReload.forFiles(options.getSharedDirectory(), options.getCacheKey(), scannedFiles,
+                                options.getSerialFilter()) :
+                        null);
+    }
+
+    private ReloadableConfig(List<File> scannedFiles, Duration checkInterval, ReloadOptions options, Instant now,
+                             Function1<Optional<T>, TransformationResult<T>> transformConfig, ParseCache parseCache,
+                             SharedReload sharedReload) {
+        this(scannedFiles, checkInterval, options, now, transformConfig, parseCache,
+                options.isContentHash() || parseCache != null ? FileDigests.digest(scannedFiles) : null,
+                sharedReload,
+                sharedReload != null && !sharedReload.tryLead() ? sharedReload.currentGeneration() : 0);
+    }
+
+    private ReloadableConfig(List<File> scannedFiles, Duration checkInterval, ReloadOptions options, Instant now,
+                             Function1<Optional<T>, TransformationResult<T>> transformConfig, ParseCache parseCache,
+                             byte[] digest, SharedReload sharedReload, long sharedGeneration) {
+        super(initialValue(transformConfig, parseCache, digest, sharedReload, sharedGeneration), now, checkInterval,
+                options.getExecutor(), (tick, prev) -> transformConfig.apply(prev));
+        if (scannedFiles.isEmpty()) {
+            throw new IllegalArgumentException("None files to scan specified.");
+        }
         this.scannedFiles = scannedFiles;
-        this.savedLastModified = checkLastModified();
+        this.scannedPaths = scannedFiles.stream()
+                .map(file -> file.toPath().toAbsolutePath().normalize())
+                .collect(Collectors.toSet());
+        this.fileStats = scannedFiles.stream()
+                .map(file -> FileStatRegistry.forPath(file.toPath().toAbsolutePath().normalize()))
+                .collect(Collectors.toList());
+        this.symlinkDirectories = scannedPaths.stream()
+                .filter(Files::isSymbolicLink)
+                .map(Path::getParent)
+                .collect(Collectors.toSet());
+        this.contentHash = options.isContentHash();
+        this.quietPeriod = options.getQuietPeriod();
+        this.transformConfig = transformConfig;
+        this.parseTimeout = options.getParseTimeout();
+        this.parserExecutor = options.isBackgroundParsing() || parseTimeout != null ?
+                Optional.ofNullable(options.getExecutor()).orElseGet(ParserThreads::parseExecutor) :
+                null;
+        this.parseCache = parseCache;
+        this.sharedReload = sharedReload;
+        this.sharedGeneration = sharedGeneration;
+        this.savedFileStates = checkFileStates(now);
+        this.savedDigest = digest;
+        named(fileNames());
+        publishShared();
+    }
+
+    private static <T> T initialValue(Function1<Optional<T>, TransformationResult<T>> transformConfig,
+                                      ParseCache parseCache, byte[] digest,
+                                      SharedReload sharedReload, long sharedGeneration) {
+        if (sharedGeneration > 0) {
+            Optional<T> shared = sharedReload.load(sharedGeneration);
+            if (shared.isPresent()) {
+                return shared.get();
+            }
+        }
+        if (parseCache == null) {
+            return transformConfig.apply(Optional.empty()).getValue();
+        }
+        Optional<T> cached = parseCache.load(digest);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        T parsed = transformConfig.apply(Optional.empty()).getValue();
+        parseCache.store(digest, parsed);
+        return parsed;
+    }
+
+    // returns false when some of directories can't be watched - in this case periodical checks should be used
+    public boolean watchFiles() {
+        return FileWatcher.watch(scannedPaths.stream()
+                .map(Path::getParent)
+                .distinct()
+                .collect(Collectors.toList()), fileChangesObserver);
+    }
+
+    private synchronized void handleFileChange(FileWatcher.Change change) {
+        if (change.isWatchCancelled() && !checkedPeriodically) {
+            log.warn("{} Watching of files was cancelled. Falling back to periodical checks", this);
+            ReloadableConfigFactory.addTickObserver(this);
+            checkedPeriodically = true;
+        }
+        if (change.getPath() == null || scannedPaths.contains(change.getPath()) ||
+                symlinkDirectories.contains(change.getPath().getParent())) {
+            log.trace("{} Handling change of file: {}", this, change.getPath());
+            try {
+                handleTimeTrigger(now());
+            } catch (Exception e) {
+                log.error("Error while handling file change, will check after next change", e);
+            }
+        }
+    }
+
+    private synchronized void handleQuietPeriodElapsed() {
+        quietPeriodCheckScheduled = false;
+        if (pendingFileStates == null) {
+            return;
+        }
+        try {
+            handleTimeTrigger(now());
+        } catch (Exception e) {
+            log.error("Error while handling end of quiet period, will check after next change", e);
+        }
     }
 
     @Override
     protected void handleTimeTrigger(Instant now) {
-        Instant currentLastModified = checkLastModified();
-        if (log.isTraceEnabled()) {
-            String fileNames = scannedFiles.stream().map(File::getPath).collect(Collectors.joining(", "));
-            log.trace("{} Last modified for files {}: {}. Previous saved is: {}", this, fileNames, currentLastModified, savedLastModified);
+        if (sharedReload != null && !sharedReload.tryLead()) {
+            loadSharedIfChanged();
+            return;
         }
-        if (currentLastModified.isAfter(savedLastModified)) {
+        if (backgroundParse != null) {
+            log.trace("{} Parsing in progress, files will be checked after it", this);
+            changedDuringParse = true;
+            return;
+        }
+        ReloadMetrics metrics = Instrumentation.metrics();
+        long start = metrics != ReloadMetrics.NOOP ? System.nanoTime() : 0;
+        boolean changed = checkFilesChanged(now);
+        if (metrics != ReloadMetrics.NOOP) {
+            metrics.filesChecked(this, System.nanoTime() - start, changed);
+        }
+        if (changed) {
             if (log.isDebugEnabled()) {
-                String fileNames = scannedFiles.stream().map(File::getPath).collect(Collectors.joining(", "));
-                log.debug("Last modified time for files {}: {} is after previous saved: {}. Reloading configuration...",
-                        fileNames, currentLastModified, savedLastModified);
+                log.debug("State of files {}: {} is different than previous saved: {}. Reloading configuration...",
+                        fileNames(), checkedFileStates, savedFileStates);
+            }
+            if (parserExecutor != null) {
+                parseInBackground();
+            } else {
+                updateCurrentValueWithTransformed(now);
+                savedFileStates = checkedFileStates;
+                savedDigest = checkedDigest;
+                storeParsed(checkedDigest);
             }
-            updateCurrentValueWithTransformed(now);
-            savedLastModified = currentLastModified;
         }
     }
 
-    private Instant checkLastModified() {
-        return scannedFiles.stream()
-                .map(File::lastModified)
-                .max(Long::compare)
-                .map(Instant::ofEpochMilli)
-                .orElseThrow(() -> new IllegalArgumentException("None files to scan specified."));
+    // previous value is available until parse is finished, then it is swapped with the parsed one
+    private void parseInBackground() {
+        BackgroundParse parse = new BackgroundParse(checkedFileStates, checkedDigest);
+        Optional<T> prev = Optional.ofNullable(currentValue());
+        parse.task = new FutureTask<>(() -> {
+            startParse(parse);
+            long start = System.nanoTime();
+            try {
+                TransformationResult<T> result = transformConfig.apply(prev);
+                finishParse(parse, result, null, System.nanoTime() - start);
+            } catch (RuntimeException | Error e) {
+                finishParse(parse, null, e, System.nanoTime() - start);
+            }
+        }, null);
+        backgroundParse = parse;
+        try {
+            parserExecutor.execute(parse.task);
+        } catch (RejectedExecutionException e) {
+            backgroundParse = null;
+            log.error("{} Parsing of configuration was rejected. Will parse again on next check", this, e);
+            Instrumentation.metrics().transformFailed(this, 0, e);
+        }
     }
 
-}
\ No newline at end of file
+    // timeout is counted from the beginning of parse, not from submission - parse waiting for thread doesn't hang
+    private synchronized void startParse(BackgroundParse parse) {
+        parse.startNanos = System.nanoTime();
+        if (parseTimeout != null && backgroundParse == parse) {
+            addDelayedTickObserver(parse.timeoutObserver, parseTimeout);
+        }
+    }
+
+    private synchronized void finishParse(BackgroundParse parse, TransformationResult<T> result, Throwable failure,
+                                          long durationNanos) {
+        if (backgroundParse != parse) {
+            if (parse.hanging) {
+                ParserThreads.abandonedParseFinished();
+            }
+            log.debug("{} Result of abandoned parse is ignored", this);
+            return;
+        }
+        backgroundParse = null;
+        if (failure != null) {
+            log.error("{} Error while parsing configuration in background", this, failure);
+            Instrumentation.metrics().transformFailed(this, durationNanos, failure);
+        } else {
+            try {
+                updateCurrentValue(result, durationNanos);
+                savedFileStates = parse.fileStates;
+                savedDigest = parse.digest;
+                storeParsed(parse.digest);
+            } catch (Exception e) {
+                log.error("{} Error while propagating parsed configuration", this, e);
+            }
+        }
+        checkChangedDuringParse();
+    }
+
+    private synchronized void abandonParse(BackgroundParse parse) {
+        if (backgroundParse != parse) {
+            return;
+        }
+        backgroundParse = null;
+        parse.task.cancel(true);
+        // thread of shared pool is held until parser finishes, even if it ignores interruption
+        if (parserExecutor == ParserThreads.parseExecutor()) {
+            parse.hanging = true;
+            ParserThreads.parseAbandoned();
+        }
+        // parse is retried only after files are changed again, not after each check
+        savedFileStates = parse.fileStates;
+        savedDigest = parse.digest;
+        log.error("{} Parsing of configuration didn't finish in {}, abandoned it. Will parse again after next change",
+                this, parseTimeout);
+        Instrumentation.metrics().transformFailed(this, System.nanoTime() - parse.startNanos,
+                new TimeoutException("Parsing didn't finish in " + parseTimeout));
+        checkChangedDuringParse();
+    }
+
+    private void storeParsed(byte[] digest) {
+        if (parseCache != null) {
+            parseCache.store(digest, currentValue());
+        }
+        publishShared();
+    }
+
+    private void publishShared() {
+        if (sharedReload != null && sharedReload.tryLead()) {
+            long published = sharedReload.publish(currentValue());
+            if (published > 0) {
+                sharedGeneration = published;
+            }
+        }
+    }
+
+    // reading of memory-mapped generation is cheap, so it is done on each tick instead of checking files
+    private void loadSharedIfChanged() {
+        long generation = sharedReload.currentGeneration();
+        if (generation == sharedGeneration) {
+            return;
+        }
+        log.debug("{} Generation of shared value changed from {} to {}. Loading it...", this, sharedGeneration, generation);
+        // value of generation which is not available anymore (e.g. deleted after next ones were published)
+        // isn't loaded - latest generation is loaded on next tick
+        Optional<T> shared = sharedReload.load(generation);
+        if (shared.isPresent()) {
+            updateCurrentValue(prev -> TransformationResult.withPropagateChangeWhenValueChanged(prev, shared.get()));
+            sharedGeneration = generation;
+        }
+    }
+
+    private void checkChangedDuringParse() {
+        if (changedDuringParse) {
+            changedDuringParse = false;
+            try {
+                handleTimeTrigger(now());
+            } catch (Exception e) {
+                log.error("Error while handling change noticed during parse, will check after next change", e);
+            }
+        }
+    }
+
+    private boolean checkFilesChanged(Instant now) {
+        List<FileStatRegistry.State> currentFileStates = checkFileStates(now);
+        if (log.isTraceEnabled()) {
+            log.trace("{} State of files {}: {}. Previous saved is: {}", this, fileNames(), currentFileStates, savedFileStates);
+        }
+        if (currentFileStates.equals(savedFileStates)) {
+            pendingFileStates = null;
+            return false;
+        }
+        if (!quietPeriodElapsed(currentFileStates)) {
+            return false;
+        }
+        pendingFileStates = null;
+        byte[] currentDigest = contentHash || parseCache != null ? FileDigests.digest(scannedFiles) : null;
+        if (contentHash && Arrays.equals(currentDigest, savedDigest)) {
+            log.debug("State of files {} was changed but content is the same. Skipping reload", fileNames());
+            savedFileStates = currentFileStates;
+            return false;
+        }
+        checkedFileStates = currentFileStates;
+        checkedDigest = currentDigest;
+        return true;
+    }
+
+    // each change of state restarts quiet period - current time of reloader clock is used because ticks are rounded
+    // to tick resolution
+    private boolean quietPeriodElapsed(List<FileStatRegistry.State> currentFileStates) {
+        if (quietPeriod.isZero() || quietPeriod.isNegative()) {
+            return true;
+        }
+        Instant now = now();
+        if (!currentFileStates.equals(pendingFileStates)) {
+            log.trace("{} State of files changed, waiting {} for next changes", this, quietPeriod);
+            pendingFileStates = currentFileStates;
+            pendingSince = now;
+            scheduleQuietPeriodCheck(quietPeriod);
+            return false;
+        }
+        Duration remaining = Duration.between(now, pendingSince.plus(quietPeriod));
+        if (!remaining.isNegative() && !remaining.isZero()) {
+            scheduleQuietPeriodCheck(remaining);
+            return false;
+        }
+        return true;
+    }
+
+    // check scheduled earlier than needed will schedule the next one for remaining time
+    private void scheduleQuietPeriodCheck(Duration delay) {
+        if (!quietPeriodCheckScheduled) {
+            addDelayedTickObserver(quietPeriodObserver, delay);
+            quietPeriodCheckScheduled = true;
+        }
+    }
+
+    private List<FileStatRegistry.State> checkFileStates(Instant now) {
+        return fileStats.stream()
+                .map(stat -> stat.check(now))
+                .collect(Collectors.toList());
+    }
+
+    private class BackgroundParse {
+
+        private final List<FileStatRegistry.State> fileStates;
+
+        private final byte[] digest;
+
+        // fields below are protected by synchronized block of config
+        private long startNanos;
+
+        // abandoned parse on shared pool which didn't finish yet
+        private boolean hanging;
+
+        private FutureTask<Void> task;
+
+        private final Observer<Instant> timeoutObserver = new AbstractObserver<Instant>() {
+            @Override
+            public void notifyChanged(Instant tick) {
+                abandonParse(BackgroundParse.this);
+            }
+        };
+
+        private BackgroundParse(List<FileStatRegistry.State> fileStates, byte[] digest) {
+            this.fileStates = fileStates;
+            this.digest = digest;
+        }
+
+    }
+
+    private String fileNames() {
+        return scannedFiles.stream().map(File::getPath).collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl;
+
+import io.vavr.Function1;
+import lombok.extern.slf4j.Slf4j;
+import pl.touk.tscreload.ReloadMetrics;
+import pl.touk.tscreload.ReloadOptions;
+import pl.touk.tscreload.ReloadableConfigFactory;
+import pl.touk.tscreload.TimeTriggeredReloadable;
+import pl.touk.tscreload.TransformationResult;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Files matching glob in directory, parsed separately. Only added and changed files are parsed again
+// and merged into map of values by file name. Removed files are removed from map.
+@Slf4j
+public class ReloadableDirectory<T> extends TimeTriggeredReloadable<Map<String, T>> {
+
+    private final Path directory;
+
+    private final String glob;
+
+    private final PathMatcher matcher;
+
+    private final Function1<Path, T> parseFile;
+
+    // protected by synchronized block - see TimeTriggeredReloadable.notifyChanged
+    private final Map<String, ParsedFile<T>> parsedFiles;
+
+    private boolean checkedPeriodically;
+
+    private final Observer<FileWatcher.Change> fileChangesObserver = new AbstractObserver<FileWatcher.Change>() {
+        @Override
+        public void notifyChanged(FileWatcher.Change change) {
+            execute(() -> handleFileChange(change));
+        }
+    };
+
+    public ReloadableDirectory(Path directory, String glob, Duration checkInterval, ReloadOptions options,
+                               Function1<Path, T> parseFile) {
+        this(directory.toAbsolutePath().normalize(), glob, checkInterval, options, parseFile, ReloadableConfigFactory.now(),
+                new HashMap<>());
+    }
+
+    private ReloadableDirectory(Path directory, String glob, Duration checkInterval, ReloadOptions options,
+                                Function1<Path, T> parseFile, Instant now, Map<String, ParsedFile<T>> parsedFiles) {
+        // values are published by handleTimeTrigger and handleFileChange, transform of ticks only republishes them
+        super(scanAll(directory, glob, parseFile, now, parsedFiles), now, checkInterval, options.getExecutor(),
+                (tick, prev) -> TransformationResult.withPropagateChangeWhenValueChanged(prev, values(parsedFiles)));
+        this.directory = directory;
+        this.glob = glob;
+        this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        this.parseFile = parseFile;
+        this.parsedFiles = parsedFiles;
+        named(directory.resolve(glob).toString());
+    }
+
+    // returns false when directory can't be watched - in this case periodical checks should be used
+    public boolean watchFiles() {
+        return FileWatcher.watch(directory, fileChangesObserver);
+    }
+
+    private synchronized void handleFileChange(FileWatcher.Change change) {
+        if (change.isWatchCancelled() && !checkedPeriodically) {
+            log.warn("{} Watching of directory was cancelled. Falling back to periodical checks", this);
+            ReloadableConfigFactory.addTickObserver(this);
+            checkedPeriodically = true;
+        }
+        try {
+            if (change.getPath() == null) {
+                handleTimeTrigger(now());
+            } else if (directory.equals(change.getPath().getParent()) &&
+                    matcher.matches(change.getPath().getFileName())) {
+                log.trace("{} Handling change of file: {}", this, change.getPath());
+                Set<String> changed = new HashSet<>();
+                if (checkFile(change.getPath(), now(), changed)) {
+                    publish(changed);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error while handling file change, will check after next change", e);
+        }
+    }
+
+    @Override
+    protected void handleTimeTrigger(Instant now) {
+        ReloadMetrics metrics = Instrumentation.metrics();
+        long start = metrics != ReloadMetrics.NOOP ? System.nanoTime() : 0;
+        Set<String> changed = new HashSet<>();
+        Set<String> removed = new HashSet<>(parsedFiles.keySet());
+        boolean anyChanged = false;
+        for (Path file : listFiles(directory, glob)) {
+            removed.remove(file.getFileName().toString());
+            anyChanged |= checkFile(file, now, changed);
+        }
+        for (String name : removed) {
+            anyChanged |= checkFile(directory.resolve(name), now, changed);
+        }
+        if (metrics != ReloadMetrics.NOOP) {
+            metrics.filesChecked(this, System.nanoTime() - start, anyChanged);
+        }
+        if (anyChanged) {
+            publish(changed);
+        }
+    }
+
+    // returns true if value for file was added, changed or removed
+    private boolean checkFile(Path file, Instant now, Set<String> changed) {
+        String name = file.getFileName().toString();
+        ParsedFile<T> parsed = parsedFiles.get(name);
+        FileStatRegistry.FileStat stat = parsed != null ? parsed.stat : FileStatRegistry.forPath(file);
+        FileStatRegistry.State state = stat.check(now);
+        if (state.getFileKey() == null) {
+            if (parsed == null) {
+                return false;
+            }
+            log.debug("{} File {} was removed", this, name);
+            parsedFiles.remove(name);
+            changed.add(name);
+            return true;
+        }
+        if (parsed != null && state.equals(parsed.state)) {
+            return false;
+        }
+        try {
+            parsedFiles.put(name, new ParsedFile<>(stat, state, parseFile.apply(file)));
+            log.debug("{} File {} was {}", this, name, parsed == null ? "added" : "changed");
+            changed.add(name);
+            return true;
+        } catch (RuntimeException e) {
+            // previous value of file is kept, state is not saved so it will be parsed again after next change
+            log.error("{} Error while parsing file {}, previous value is kept", this, name, e);
+            return false;
+        }
+    }
+
+    private void publish(Set<String> changed) {
+        log.debug("{} Files {} were changed, propagating {} values", this, changed, parsedFiles.size());
+        Map<String, T> values = values(parsedFiles);
+        updateCurrentValue(prev -> new TransformationResult<>(values, true));
+    }
+
+    private static <T> Map<String, T> scanAll(Path directory, String glob, Function1<Path, T> parseFile, Instant now,
+                                              Map<String, ParsedFile<T>> parsedFiles) {
+        for (Path file : listFiles(directory, glob)) {
+            FileStatRegistry.FileStat stat = FileStatRegistry.forPath(file);
+            FileStatRegistry.State state = stat.check(now);
+            parsedFiles.put(file.getFileName().toString(), new ParsedFile<>(stat, state, parseFile.apply(file)));
+        }
+        return values(parsedFiles);
+    }
+
+    private static <T> Map<String, T> values(Map<String, ParsedFile<T>> parsedFiles) {
+        Map<String, T> values = new HashMap<>(parsedFiles.size() * 2);
+        parsedFiles.forEach((name, parsed) -> values.put(name, parsed.value));
+        return Collections.unmodifiableMap(values);
+    }
+
+    private static Set<Path> listFiles(Path directory, String glob) {
+        Set<Path> files = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            log.debug("Directory {} doesn't exist", directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error while listing files in directory: " + directory, e);
+        }
+        return files;
+    }
+
+    private static class ParsedFile<T> {
+
+        private final FileStatRegistry.FileStat stat;
+
+        private final FileStatRegistry.State state;
+
+        private final T value;
+
+        private ParsedFile(FileStatRegistry.FileStat stat, FileStatRegistry.State state, T value) {
+            this.stat = stat;
+            this.state = state;
+            this.value = value;
+        }
+
+    }
+
+}
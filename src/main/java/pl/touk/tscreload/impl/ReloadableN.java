@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl;
+
+import io.vavr.Function1;
+import io.vavr.Function2;
+import pl.touk.tscreload.Reloadable;
+import pl.touk.tscreload.TransformationResult;
+
+import java.util.Optional;
+
+// Composition of any number of parents. Parent values are kept in one array, each parent notifies its own slot observer.
+public class ReloadableN<C> extends Reloadable<C> implements Propagation.Node {
+
+    // exactly one of transform and valueTransform is given. Both are invoked with parent values array owned by this
+    // node, under its monitor - they mustn't keep reference to the array
+    private final Function2<Object[], Optional<C>, TransformationResult<C>> transform;
+
+    private final Function1<Object[], C> valueTransform;
+
+    // access to currentParentValues is synchronized on this
+    private final Object[] currentParentValues;
+
+    private final SlotObserver[] observers;
+
+    // created once, so recomputation doesn't allocate capturing lambda on each update
+    private final Function1<Optional<C>, TransformationResult<C>> recomputation;
+
+    public ReloadableN(Object[] currentParentValues,
+                       int rank,
+                       Function2<Object[], Optional<C>, TransformationResult<C>> transform) {
+        super(transform.apply(currentParentValues, Optional.empty()).getValue(), rank);
+        this.transform = transform;
+        this.valueTransform = null;
+        this.currentParentValues = currentParentValues;
+        this.observers = createObservers(this, currentParentValues.length);
+        this.recomputation = prev -> this.transform.apply(this.currentParentValues, prev);
+    }
+
+    // change is propagated only when transformed value is not equal to previous one
+    public ReloadableN(Object[] currentParentValues,
+                       int rank,
+                       Function1<Object[], C> valueTransform) {
+        super(valueTransform.apply(currentParentValues), rank);
+        this.transform = null;
+        this.valueTransform = valueTransform;
+        this.currentParentValues = currentParentValues;
+        this.observers = createObservers(this, currentParentValues.length);
+        this.recomputation = null;
+    }
+
+    private static SlotObserver[] createObservers(ReloadableN<?> reloadable, int count) {
+        SlotObserver[] observers = new SlotObserver[count];
+        for (int i = 0; i < count; i++) {
+            observers[i] = new SlotObserver(reloadable, i);
+        }
+        return observers;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <P> Observer<P> observer(int slot) {
+        return (Observer<P>) observers[slot];
+    }
+
+    @Override
+    public synchronized void recompute() {
+        if (valueTransform != null) {
+            updateCurrentValue(valueTransform, currentParentValues);
+        } else {
+            updateCurrentValue(recomputation);
+        }
+    }
+
+    private static class SlotObserver extends AbstractObserver<Object> {
+
+        private final ReloadableN<?> reloadable;
+
+        private final int slot;
+
+        private SlotObserver(ReloadableN<?> reloadable, int slot) {
+            this.reloadable = reloadable;
+            this.slot = slot;
+        }
+
+        @Override
+        public void notifyChanged(Object parentValue) {
+            synchronized (reloadable) {
+                reloadable.currentParentValues[slot] = parentValue;
+            }
+            Propagation.schedule(reloadable);
+        }
+
+    }
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl;
+
+import pl.touk.tscreload.ConfigSource;
+import pl.touk.tscreload.ReloadOptions;
+import pl.touk.tscreload.ReloadableConfigFactory;
+import pl.touk.tscreload.TimeTriggeredReloadable;
+import pl.touk.tscreload.TransformationResult;
+
+import java.time.Duration;
+
+// Configuration polled from source in check interval, change is propagated only when loaded value was changed
+public class ReloadableSource<T> extends TimeTriggeredReloadable<T> {
+
+    public ReloadableSource(ConfigSource<T> source, Duration checkInterval, ReloadOptions options) {
+        super(source.loadIfChanged().orElseThrow(() -> new IllegalStateException("Source " + source + " returned no content")),
+                ReloadableConfigFactory.now(), checkInterval, options.getExecutor(),
+                (tick, prev) -> source.loadIfChanged()
+                        .map(loaded -> TransformationResult.withPropagateChangeWhenValueChanged(prev, loaded))
+                        .orElseGet(() -> new TransformationResult<>(prev.orElse(null), false)));
+        named(source.toString());
+    }
+
+}
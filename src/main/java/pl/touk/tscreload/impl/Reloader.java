@@ -15,28 +15,261 @@
  */
 package pl.touk.tscreload.impl;
 
+import lombok.extern.slf4j.Slf4j;
+import pl.touk.tscreload.TimeTriggeredReloadable;
+
+import java.lang.ref.WeakReference;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Wakes observers only when their check interval elapses. Observers are kept in timing wheels so cost of tick doesn't
+// depend on number of registered observers. By default there is one wheel advanced on the ticker thread. With several
+// shards observers are spread over them, each with own wheel, and shards are advanced in parallel - one slow check
+// delays only observers from the same shard. Ticks start with the first registered observer and threads for shards
+// are created only when observers were registered in several of them, so unused reloader costs nothing. Time is read
+// from given clock, so with VirtualClock and without scheduler ticks can be simulated much faster than in real time
+// - see ReloaderSpec.
+@Slf4j
+public class Reloader {
+
+    private final long tickMillis;
+
+    private final Clock clock;
+
+    private final long startMillis;
+
+    private final Shard[] shards;
+
+    private final AtomicLong registrationsCount = new AtomicLong();
+
+    // null means that ticks are triggered by invocations of tick()
+    private final ScheduledExecutorService scheduler;
 
-public class Reloader extends Observable<Instant> {
+    // scheduler created by this reloader is shut down when it is cancelled
+    private final boolean ownScheduler;
+
+    // fields below are written in synchronized block. Null means that ticks weren't started yet
+    private volatile ScheduledFuture<?> scheduledFuture;
+
+    // null means that shards are advanced on the tick thread
+    private volatile ForkJoinPool checkers;
+
+    private boolean cancelled;
+
+    public Reloader(Duration tickDuration) {
+        this(tickDuration, 1);
+    }
+
+    public Reloader(Duration tickDuration, int shardsCount) {
+        this(tickDuration, shardsCount, Clock.systemUTC(),
+                Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "tsc-reload-ticker")), true);
+    }
 
-    private final ScheduledFuture<?> scheduledFuture;
+    // with single shard and without scheduler, observers are notified synchronously on thread invoking tick(),
+    // so simulation with virtual clock is deterministic
+    public Reloader(Duration tickDuration, int shardsCount, Clock clock, ScheduledExecutorService scheduler) {
+        this(tickDuration, shardsCount, clock, scheduler, false);
+    }
+
+    private Reloader(Duration tickDuration, int shardsCount, Clock clock, ScheduledExecutorService scheduler,
+                     boolean ownScheduler) {
+        this.tickMillis = Math.max(1, tickDuration.toMillis());
+        this.clock = clock;
+        this.startMillis = clock.millis();
+        this.shards = new Shard[Math.max(1, shardsCount)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard();
+        }
+        this.scheduler = scheduler;
+        this.ownScheduler = ownScheduler;
+    }
+
+    public Instant now() {
+        return clock.instant();
+    }
+
+    public void addWeakObserver(Observer<Instant> observer, Duration checkInterval) {
+        long intervalTicks = Math.max(1, ceilDiv(checkInterval.toMillis(), tickMillis));
+        // deadlines are aligned to multiples of interval, so observers with the same interval are notified on the same
+        // tick regardless of registration time and share stats of files - see FileStatRegistry
+        long currentTick = Math.floorDiv(clock.millis() - startMillis, tickMillis);
+        long deadline = (Math.floorDiv(currentTick, intervalTicks) + 1) * intervalTicks;
+        nextShard().registrations.add(new ScheduledObserver(observer, intervalTicks, deadline));
+        startTicks();
+        log.trace("Scheduled observer {} with check interval {}", observer, checkInterval);
+    }
+
+    // observer will be notified once, not earlier than after given delay
+    public void addWeakObserverOnce(Observer<Instant> observer, Duration delay) {
+        long delayTicks = Math.max(1, ceilDiv(delay.toMillis(), tickMillis));
+        long deadline = Math.floorDiv(clock.millis() - startMillis, tickMillis) + 1 + delayTicks;
+        nextShard().registrations.add(new ScheduledObserver(observer, 0, deadline));
+        startTicks();
+        log.trace("Scheduled observer {} once after {}", observer, delay);
+    }
+
+    private void startTicks() {
+        if (scheduler == null || scheduledFuture != null) {
+            return;
+        }
+        synchronized (this) {
+            if (!cancelled && scheduledFuture == null) {
+                scheduledFuture = scheduler.scheduleAtFixedRate(this::tick, tickMillis, tickMillis,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private Shard nextShard() {
+        return shards[(int) (registrationsCount.getAndIncrement() % shards.length)];
+    }
 
-    public Reloader(int tickDelaySeconds) {
-        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-        scheduledFuture = scheduler.scheduleAtFixedRate(new Runnable() {
-            @Override
-            public void run() {
-                notifyObservers(Instant.now());
+    // advances shards to the current time of clock, ticks missed since last invocation are caught up
+    public void tick() {
+        long targetTick = (clock.millis() - startMillis) / tickMillis;
+        ForkJoinPool checkers = checkers();
+        for (Shard shard : shards) {
+            // shard which is still busy with previous tick will catch up to the target tick next time
+            if (shard.advancing.compareAndSet(false, true)) {
+                if (checkers == null) {
+                    shard.advanceTo(targetTick);
+                } else {
+                    try {
+                        checkers.execute(() -> shard.advanceTo(targetTick));
+                    } catch (RejectedExecutionException e) {
+                        // reloader was cancelled
+                        shard.advancing.set(false);
+                    }
+                }
             }
-        }, tickDelaySeconds, tickDelaySeconds, TimeUnit.SECONDS);
+        }
     }
 
-    public void cancel(boolean mayInterruptIfRunning) {
-        scheduledFuture.cancel(mayInterruptIfRunning);
+    // with several shards, they are advanced in parallel since observers were registered in at least two of them
+    private ForkJoinPool checkers() {
+        ForkJoinPool current = checkers;
+        if (current != null || shards.length == 1 || registrationsCount.get() < 2) {
+            return current;
+        }
+        synchronized (this) {
+            if (!cancelled && checkers == null) {
+                checkers = new ForkJoinPool(shards.length, pool -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("tsc-reload-checker-" + thread.getPoolIndex());
+                    thread.setDaemon(true);
+                    return thread;
+                }, null, true);
+            }
+            return checkers;
+        }
+    }
+
+    // stops ticks and releases threads of reloader - scheduler given from outside is left running
+    public synchronized void cancel(boolean mayInterruptIfRunning) {
+        cancelled = true;
+        if (scheduledFuture != null) {
+            scheduledFuture.cancel(mayInterruptIfRunning);
+        }
+        if (ownScheduler) {
+            shutdown(scheduler, mayInterruptIfRunning);
+        }
+        if (checkers != null) {
+            shutdown(checkers, mayInterruptIfRunning);
+        }
+    }
+
+    private static void shutdown(ExecutorService executor, boolean mayInterruptIfRunning) {
+        if (mayInterruptIfRunning) {
+            executor.shutdownNow();
+        } else {
+            executor.shutdown();
+        }
+    }
+
+    // closed reloadables are dropped instead of being scheduled again
+    private static boolean isClosed(Observer<Instant> observer) {
+        return observer instanceof TimeTriggeredReloadable && ((TimeTriggeredReloadable<?>) observer).isClosed();
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    private class Shard {
+
+        private final Queue<ScheduledObserver> registrations = new ConcurrentLinkedQueue<>();
+
+        // accessed only by thread which set advancing flag
+        private final TimingWheel<ScheduledObserver> wheel = new TimingWheel<>(0);
+
+        private final AtomicBoolean advancing = new AtomicBoolean();
+
+        private void advanceTo(long targetTick) {
+            try {
+                ScheduledObserver registered;
+                while ((registered = registrations.poll()) != null) {
+                    wheel.add(registered);
+                }
+                while (wheel.currentTick() < targetTick) {
+                    wheel.advance(this::notifyDue);
+                }
+            } catch (Exception ex) {
+                log.error("Exception while handling tick", ex);
+            } finally {
+                advancing.set(false);
+            }
+        }
+
+        private void notifyDue(ScheduledObserver scheduled) {
+            Observer<Instant> observer = scheduled.get();
+            if (observer == null || isClosed(observer)) {
+                return;
+            }
+            if (scheduled.intervalTicks > 0) {
+                scheduled.deadline = wheel.currentTick() + scheduled.intervalTicks;
+                wheel.add(scheduled);
+            }
+            try {
+                // all observers due on the same tick get the same instant - see FileStatRegistry
+                observer.notifyChanged(Instant.ofEpochMilli(startMillis + wheel.currentTick() * tickMillis));
+            } catch (Exception ex) {
+                log.error("Exception while notify about tick.", ex);
+            }
+        }
+
+    }
+
+    private static class ScheduledObserver extends WeakReference<Observer<Instant>> implements TimingWheel.Entry {
+
+        // 0 means that observer is notified once
+        private final long intervalTicks;
+
+        private long deadline;
+
+        private ScheduledObserver(Observer<Instant> observer, long intervalTicks, long deadline) {
+            super(observer);
+            this.intervalTicks = intervalTicks;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public long getDeadline() {
+            return deadline;
+        }
+
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.List;
+
+// Values serialized in files shared between runs or processes
+class SerializedValues {
+
+    private SerializedValues() {
+    }
+
+    // prefix of files of scanned files - digest of key and their paths
+    static String filesPrefix(String key, List<File> scannedFiles) {
+        MessageDigest digest = FileDigests.newDigest();
+        digest.update(key.getBytes(StandardCharsets.UTF_8));
+        for (File file : scannedFiles) {
+            digest.update((byte) 0);
+            digest.update(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+        }
+        return toHex(digest.digest());
+    }
+
+    // process-wide filter, if set, is applied as well
+    static Object read(Path file, ObjectInputFilter filter) throws IOException, ClassNotFoundException {
+        try (InputStream in = Files.newInputStream(file);
+             ObjectInputStream objects = new ObjectInputStream(in)) {
+            ObjectInputFilter processFilter = objects.getObjectInputFilter();
+            objects.setObjectInputFilter(processFilter == null ? filter : info ->
+                    processFilter.checkInput(info) == ObjectInputFilter.Status.REJECTED ?
+                            ObjectInputFilter.Status.REJECTED :
+                            filter.checkInput(info));
+            return objects.readObject();
+        }
+    }
+
+    static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+            objects.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    static void write(Path file, Object value) throws IOException {
+        write(file, serialize(value));
+    }
+
+    // file is replaced atomically, so readers never see partially written value
+    static void write(Path file, byte[] serialized) throws IOException {
+        Path directory = file.getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, serialized);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+}
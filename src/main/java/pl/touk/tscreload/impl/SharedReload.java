@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputFilter;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+// Coordinates reloads of the same files by processes sharing directory. Process holding lock on lock file is the leader -
+// it checks and parses files, then publishes serialized value and increments generation counter in memory-mapped file.
+// Other processes only read the counter and load published value when it was changed. When leader dies, its lock
+// is released by operating system and one of other processes becomes the leader.
+@Slf4j
+public class SharedReload {
+
+    private static final VarHandle LONG_VIEW = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final String SUFFIX = ".ser";
+
+    private final Path directory;
+
+    private final String prefix;
+
+    private final ObjectInputFilter filter;
+
+    private final FileChannel lockChannel;
+
+    private final MappedByteBuffer generation;
+
+    // protected by synchronized block
+    private FileLock leaderLock;
+
+    private SharedReload(Path directory, String prefix, ObjectInputFilter filter) throws IOException {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.filter = filter;
+        Files.createDirectories(directory);
+        this.lockChannel = FileChannel.open(directory.resolve(prefix + ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try (FileChannel generationChannel = FileChannel.open(directory.resolve(prefix + ".gen"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // mapping stays valid after channel is closed
+            this.generation = generationChannel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        }
+    }
+
+    public static SharedReload forFiles(File directory, String key, List<File> scannedFiles, ObjectInputFilter filter) {
+        try {
+            return new SharedReload(directory.toPath(), SerializedValues.filesPrefix(key, scannedFiles), filter);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open shared reload files in directory: " + directory, e);
+        }
+    }
+
+    // returns true if this process is the leader, tries to become the leader if there is none
+    public synchronized boolean tryLead() {
+        if (leaderLock != null) {
+            return true;
+        }
+        try {
+            leaderLock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // other reloadable of the same files in this process is the leader
+            leaderLock = null;
+        } catch (IOException e) {
+            log.warn("Can't lock {}, will try to become the leader later", directory.resolve(prefix + ".lock"), e);
+        }
+        if (leaderLock != null) {
+            log.info("Became the leader of reloads of {} in {}", prefix, directory);
+        }
+        return leaderLock != null;
+    }
+
+    public long currentGeneration() {
+        return (long) LONG_VIEW.getAcquire(generation, 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Optional<T> load(long generation) {
+        Path file = valuePath(generation);
+        try {
+            return Optional.of((T) SerializedValues.read(file, filter));
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            log.warn("Can't load published value {}, will try to load the latest one on next check", file, e);
+            return Optional.empty();
+        }
+    }
+
+    // publishes value as the next generation, returns the generation or -1 if value wasn't published.
+    // Value equal to the latest published one (e.g. parsed after restart of the leader) isn't published again,
+    // so other processes don't load and propagate it - then the latest generation is returned
+    public synchronized long publish(Object value) {
+        if (leaderLock == null) {
+            throw new IllegalStateException("Only the leader can publish values");
+        }
+        long current = currentGeneration();
+        long next = current + 1;
+        try {
+            byte[] serialized = SerializedValues.serialize(value);
+            if (current > 0 && isPublished(current, serialized)) {
+                log.debug("Value is the same as published generation {} of {} in {}", current, prefix, directory);
+                return current;
+            }
+            SerializedValues.write(valuePath(next), serialized);
+            LONG_VIEW.setRelease(generation, 0, next);
+            // previous value is kept for processes which are loading it right now
+            Files.deleteIfExists(valuePath(next - 2));
+            log.debug("Published generation {} of {} in {}", next, prefix, directory);
+            return next;
+        } catch (NotSerializableException e) {
+            log.warn("Value is not serializable, it can't be shared with other processes: {}", e.getMessage());
+            return -1;
+        } catch (IOException e) {
+            log.warn("Can't publish value of generation {} of {} in {}", next, prefix, directory, e);
+            return -1;
+        }
+    }
+
+    private boolean isPublished(long generation, byte[] serialized) {
+        try {
+            return Arrays.equals(Files.readAllBytes(valuePath(generation)), serialized);
+        } catch (IOException e) {
+            // e.g. deleted by other process - value is published as the next generation
+            return false;
+        }
+    }
+
+    private Path valuePath(long generation) {
+        return directory.resolve(prefix + "-" + generation + SUFFIX);
+    }
+
+}
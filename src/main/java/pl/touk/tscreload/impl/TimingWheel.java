@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Hierarchical timing wheel - each level has WHEEL_SIZE slots, slot on level L spans WHEEL_SIZE^L ticks.
+// Entries are kept on the lowest level that can hold their deadline and are cascaded down when time comes closer,
+// so advancing by one tick touches only entries that are due (plus amortized cascades). Not thread safe.
+class TimingWheel<E extends TimingWheel.Entry> {
+
+    private static final int WHEEL_BITS = 6;
+
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private static final int LEVELS = 6;
+
+    private final List<List<E>> slots = new ArrayList<>(LEVELS * WHEEL_SIZE);
+
+    private long currentTick;
+
+    private int size;
+
+    TimingWheel(long currentTick) {
+        this.currentTick = currentTick;
+        for (int i = 0; i < LEVELS * WHEEL_SIZE; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    long currentTick() {
+        return currentTick;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void add(E entry) {
+        // overdue entries will be handled on next tick
+        long deadline = Math.max(entry.getDeadline(), currentTick + 1);
+        long delta = deadline - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (WHEEL_BITS * (level + 1))) {
+            level++;
+        }
+        slot(level, deadline).add(entry);
+        size++;
+    }
+
+    // moves wheel one tick forward and passes entries that are due to consumer
+    void advance(Consumer<E> dueEntryConsumer) {
+        currentTick++;
+        int cascadedLevel = 0;
+        while (cascadedLevel < LEVELS - 1 && (currentTick & ((1L << (WHEEL_BITS * (cascadedLevel + 1))) - 1)) == 0) {
+            cascadedLevel++;
+        }
+        for (int level = cascadedLevel; level > 0; level--) {
+            addOrConsumeDue(takeSlot(level, currentTick), dueEntryConsumer);
+        }
+        addOrConsumeDue(takeSlot(0, currentTick), dueEntryConsumer);
+    }
+
+    private void addOrConsumeDue(List<E> entries, Consumer<E> dueEntryConsumer) {
+        for (E entry : entries) {
+            if (entry.getDeadline() > currentTick) {
+                add(entry);
+            } else {
+                dueEntryConsumer.accept(entry);
+            }
+        }
+    }
+
+    private List<E> takeSlot(int level, long tick) {
+        int index = index(level, tick);
+        List<E> taken = slots.get(index);
+        if (taken.isEmpty()) {
+            return taken;
+        }
+        slots.set(index, new ArrayList<>());
+        size -= taken.size();
+        return taken;
+    }
+
+    private List<E> slot(int level, long tick) {
+        return slots.get(index(level, tick));
+    }
+
+    private int index(int level, long tick) {
+        return level * WHEEL_SIZE + (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+    }
+
+    interface Entry {
+
+        long getDeadline();
+
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+// Counts writes of value of one reloadable and waves which wrote it and are still in progress - see
+// Propagation.readConsistently. Value is written by at most one wave at the same time, but waves writing it
+// can overlap with each other, so in progress waves are counted instead of marked by odd counter.
+public class WriteStamp {
+
+    private static final AtomicIntegerFieldUpdater<WriteStamp> WAVES_IN_PROGRESS =
+            AtomicIntegerFieldUpdater.newUpdater(WriteStamp.class, "wavesInProgress");
+
+    private static final AtomicLongFieldUpdater<WriteStamp> WRITES =
+            AtomicLongFieldUpdater.newUpdater(WriteStamp.class, "writes");
+
+    private volatile int wavesInProgress;
+
+    private volatile long writes;
+
+    void startWave() {
+        WAVES_IN_PROGRESS.incrementAndGet(this);
+    }
+
+    void finishWave() {
+        WAVES_IN_PROGRESS.decrementAndGet(this);
+    }
+
+    void written() {
+        WRITES.incrementAndGet(this);
+    }
+
+    long writes() {
+        return writes;
+    }
+
+    boolean writtenByWaveInProgress() {
+        return wavesInProgress > 0;
+    }
+
+}
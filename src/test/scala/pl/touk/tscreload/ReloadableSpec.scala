@@ -16,20 +16,28 @@
 package pl.touk.tscreload
 
 import java.io.{File, PrintWriter}
-import java.time.Duration
+import java.net.{InetSocketAddress, URI}
+import java.nio.file.attribute.FileTime
+import java.nio.file.{Files, Paths, StandardCopyOption}
+import java.time.{Duration, Instant}
 import java.util.Optional
+import java.util.concurrent.{Executor, Executors, Flow, TimeUnit}
 import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.{Predicate, ToIntFunction, ToLongFunction}
 
+import com.sun.net.httpserver.{HttpExchange, HttpHandler, HttpServer}
 import com.typesafe.config.{Config, ConfigFactory}
 import net.ceedubs.ficus.Ficus
 import net.ceedubs.ficus.readers.ArbitraryTypeReader
 import org.scalatest._
+import pl.touk.tscreload.impl.{Reloader, VirtualClock}
 
 class ReloadableSpec extends fixture.FlatSpec with Matchers with GivenWhenThen {
   import ArbitraryTypeReader._
   import Ficus._
   import JFunctionConversions._
   import collection.convert.decorateAsJava._
+  import collection.convert.decorateAsScala._
 
   it should "provide initial value" in { fixture =>
     import fixture._
@@ -56,6 +64,39 @@ class ReloadableSpec extends fixture.FlatSpec with Matchers with GivenWhenThen {
     reloadableFooBar.currentValue() shouldEqual nextFooBarValue
   }
 
+  it should "reload nested value shortly after change when files are watched" in { fixture =>
+    import fixture._
+    Given("reloadable initial value")
+    val reloadableFooBar = loadReloadableValue(1)
+
+    When("write new value to config file")
+    val nextFooBarValue = 2
+    Thread.sleep(1000) // for make sure that last modified was changed
+    writeValueToConfigFile(nextFooBarValue)
+
+    Then("nested value should be reloaded before next tick")
+    Thread.sleep(500)
+    reloadableFooBar.currentValue() shouldEqual nextFooBarValue
+  }
+
+  it should "reload nested value after change when watching of files is disabled" in { fixture =>
+    import fixture._
+    Given("reloadable initial value checked periodically in sub-second interval")
+    writeValueToConfigFile(1)
+    val reloadableFooBar = TscReloadableConfigFactory
+      .parseFile(configFile, Duration.ofMillis(200), ReloadOptions.builder().watchFiles(false).build())
+      .map((cfg: Config) => cfg.getInt("foo.bar"))
+
+    When("write new value to config file")
+    val nextFooBarValue = 2
+    Thread.sleep(1000) // for make sure that last modified was changed
+    writeValueToConfigFile(nextFooBarValue)
+
+    Then("after next check nested value should be same as new value")
+    Thread.sleep(1000)
+    reloadableFooBar.currentValue() shouldEqual nextFooBarValue
+  }
+
   it should "reload composed value after change" in { fixture =>
     import fixture._
     Given("reloadable initial values")
@@ -84,6 +125,476 @@ class ReloadableSpec extends fixture.FlatSpec with Matchers with GivenWhenThen {
     reloadableComposed.currentValue() shouldEqual (newBase + leftDelta + newBase + rightDelta)
   }
 
+  it should "reload value composed of many reloadables once per change" in { fixture =>
+    import fixture._
+    Given("many reloadable values depending on the same config")
+    val reloadable = loadReloadableConfig(0)
+    val values = (1 to 8).map(delta => reloadable.map((cfg: Config) => cfg.getInt("foo.bar") + delta))
+
+    When("compose all of them")
+    val evaluationCount = new AtomicInteger(0)
+    val reloadableComposed = Reloadable.compose[Int, Int](values.asJava, { (vs: java.util.List[Int]) =>
+      evaluationCount.incrementAndGet()
+      vs.asScala.sum
+    })
+
+    Then("should compute initial sum")
+    reloadableComposed.currentValue() shouldEqual (1 to 8).sum
+
+    When("write new value to config file")
+    Thread.sleep(1000) // for make sure that last modified was changed
+    writeValueToConfigFile(1)
+
+    Then("after reload composed value should be recalculated once")
+    Thread.sleep(ReloadableConfigFactory.TICK_SECONDS * 1000 + 500)
+    reloadableComposed.currentValue() shouldEqual (1 to 8).map(_ + 1).sum
+    evaluationCount.get() shouldEqual 2
+  }
+
+  it should "recompute value depending on the same config twice only once per change" in { fixture =>
+    import fixture._
+    Given("reloadable initial config")
+    val reloadable = loadReloadableConfig(1)
+    val fooBar = reloadable.map((cfg: Config) => cfg.getInt("foo.bar"))
+
+    When("compose config with value derived from it")
+    var evaluationCount = 0
+    var inconsistentEvaluations = 0
+    val reloadableComposed = Reloadable.compose(reloadable, fooBar, { (cfg: Config, v: Int) =>
+      evaluationCount += 1
+      if (cfg.getInt("foo.bar") != v) inconsistentEvaluations += 1
+      v * 2
+    })
+
+    And("write new value to config file")
+    val newValue = 2
+    Thread.sleep(1000) // for make sure that last modified was changed
+    writeValueToConfigFile(newValue)
+
+    Then("composed value should be recomputed once with already updated values")
+    Thread.sleep(ReloadableConfigFactory.TICK_SECONDS * 1000 + 500)
+    reloadableComposed.currentValue() shouldEqual newValue * 2
+    evaluationCount shouldEqual 2
+    inconsistentEvaluations shouldEqual 0
+  }
+
+  it should "reload config once after burst of writes when quiet period is given" in { fixture =>
+    import fixture._
+    Given("reloadable config with quiet period")
+    writeValueToConfigFile(1)
+    val parsesCount = new AtomicInteger(0)
+    val options = ReloadOptions.builder().quietPeriod(Duration.ofMillis(1000)).build()
+    val reloadable = ReloadableConfigFactory.load(List(configFile).asJava, Duration.ofSeconds(0), options,
+      (prev: Optional[Config]) => {
+        parsesCount.incrementAndGet()
+        TransformationResult.withPropagateChangeWhenValueChanged(prev, ConfigFactory.parseFile(configFile))
+      })
+
+    When("write several values to config file")
+    Thread.sleep(1000) // for make sure that last modified was changed
+    (2 to 5).foreach { value =>
+      writeValueToConfigFile(value)
+      Thread.sleep(300)
+    }
+
+    Then("config should not be reloaded during burst")
+    reloadable.currentValue().getInt("foo.bar") shouldEqual 1
+
+    And("after quiet period config should be reloaded once with the last value")
+    Thread.sleep(1500)
+    reloadable.currentValue().getInt("foo.bar") shouldEqual 5
+    parsesCount.get() shouldEqual 2
+  }
+
+  it should "reload config after swap of symbolic link target" in { fixture =>
+    import fixture._
+    Given("config file linked through swappable directory link like in Kubernetes ConfigMap volume")
+    val volume = Files.createDirectories(Paths.get(s"target/volume_$i"))
+    Seq("..data", "..data_tmp", "foo.conf").foreach(link => Files.deleteIfExists(volume.resolve(link)))
+    val firstVersion = Files.createDirectories(volume.resolve("..v1"))
+    val secondVersion = Files.createDirectories(volume.resolve("..v2"))
+    writeValueToConfigFile(firstVersion.resolve("foo.conf").toFile, 1)
+    writeValueToConfigFile(secondVersion.resolve("foo.conf").toFile, 2)
+    val sameTime = FileTime.fromMillis(System.currentTimeMillis() - 10000)
+    Files.setLastModifiedTime(firstVersion.resolve("foo.conf"), sameTime)
+    Files.setLastModifiedTime(secondVersion.resolve("foo.conf"), sameTime)
+    Files.createSymbolicLink(volume.resolve("..data"), Paths.get("..v1"))
+    Files.createSymbolicLink(volume.resolve("foo.conf"), Paths.get("..data/foo.conf"))
+    val reloadable = TscReloadableConfigFactory.parseFile(volume.resolve("foo.conf").toFile, Duration.ofSeconds(0))
+
+    When("swap data link to next version having the same length and modification time")
+    Files.createSymbolicLink(volume.resolve("..data_tmp"), Paths.get("..v2"))
+    Files.move(volume.resolve("..data_tmp"), volume.resolve("..data"), StandardCopyOption.ATOMIC_MOVE)
+
+    Then("config should be reloaded")
+    Thread.sleep(1000)
+    reloadable.currentValue().getInt("foo.bar") shouldEqual 2
+  }
+
+  it should "serve previous value during parse in background and abandon too long parse" in { fixture =>
+    import fixture._
+    Given("periodically checked config parsed in background with timeout and hanging parse after first change")
+    writeValueToConfigFile(1)
+    val parsesCount = new AtomicInteger(0)
+    val options = ReloadOptions.builder().parseTimeout(Duration.ofMillis(1000)).watchFiles(false).build()
+    val reloadable = ReloadableConfigFactory.load(List(configFile).asJava, Duration.ofSeconds(0), options,
+      (prev: Optional[Config]) => {
+        if (parsesCount.incrementAndGet() == 2) Thread.sleep(10000)
+        TransformationResult.withPropagateChangeWhenValueChanged(prev, ConfigFactory.parseFile(configFile))
+      })
+
+    When("write new value to config file")
+    Thread.sleep(1000) // for make sure that last modified was changed
+    writeValueToConfigFile(2)
+
+    Then("previous value should be available during parse")
+    Thread.sleep(500)
+    parsesCount.get() shouldEqual 2
+    reloadable.currentValue().getInt("foo.bar") shouldEqual 1
+
+    When("parse is abandoned")
+    Thread.sleep(1000)
+
+    Then("files should not be parsed again until next change")
+    parsesCount.get() shouldEqual 2
+
+    When("next value is written")
+    writeValueToConfigFile(3)
+
+    Then("next value should be parsed")
+    Thread.sleep(1000)
+    reloadable.currentValue().getInt("foo.bar") shouldEqual 3
+    parsesCount.get() shouldEqual 3
+  }
+
+  it should "count parse timeout from beginning of parse, not from waiting for thread" in { fixture =>
+    import fixture._
+    Given("config parsed in background with timeout on executor which starts tasks late")
+    writeValueToConfigFile(1)
+    val scheduler = Executors.newSingleThreadScheduledExecutor()
+    try {
+      val lateExecutor = new Executor {
+        override def execute(task: Runnable): Unit = scheduler.schedule(task, 1500, TimeUnit.MILLISECONDS)
+      }
+      val options = ReloadOptions.builder().parseTimeout(Duration.ofMillis(1000)).watchFiles(false)
+        .executor(lateExecutor).build()
+      val reloadable = ReloadableConfigFactory.load(List(configFile).asJava, Duration.ofSeconds(0), options,
+        (prev: Optional[Config]) => TransformationResult.withPropagateChangeWhenValueChanged(prev, ConfigFactory.parseFile(configFile)))
+
+      When("write new value to config file")
+      Thread.sleep(1000) // for make sure that last modified was changed
+      writeValueToConfigFile(2)
+
+      Then("parse waiting longer than timeout should not be abandoned")
+      Thread.sleep(5000)
+      reloadable.currentValue().getInt("foo.bar") shouldEqual 2
+    } finally {
+      scheduler.shutdownNow()
+    }
+  }
+
+  it should "parse again only added and changed files in directory" in { fixture =>
+    import fixture._
+    Given("reloadable directory with two config files")
+    val directory = Files.createDirectories(Paths.get(s"target/conf_$i.d")).toFile
+    directory.listFiles().foreach(_.delete())
+    writeValueToConfigFile(new File(directory, "a.conf"), 1)
+    writeValueToConfigFile(new File(directory, "b.conf"), 1)
+    val parsedFiles = new java.util.concurrent.ConcurrentLinkedQueue[String]()
+    val reloadable = ReloadableConfigFactory.loadDirectory(directory, "*.conf", Duration.ofSeconds(0), { file: File =>
+      parsedFiles.add(file.getName)
+      ConfigFactory.parseFile(file).getInt("foo.bar")
+    })
+    reloadable.currentValue().asScala shouldEqual Map("a.conf" -> 1, "b.conf" -> 1)
+
+    When("change one file, add next one and remove other")
+    Thread.sleep(1000) // for make sure that last modified was changed
+    parsedFiles.clear()
+    writeValueToConfigFile(new File(directory, "a.conf"), 2)
+    writeValueToConfigFile(new File(directory, "c.conf"), 3)
+    writeValueToConfigFile(new File(directory, "ignored.txt"), 4)
+    new File(directory, "b.conf").delete()
+
+    Then("only changed and added files should be parsed")
+    Thread.sleep(1000)
+    reloadable.currentValue().asScala shouldEqual Map("a.conf" -> 2, "c.conf" -> 3)
+    parsedFiles.asScala.toSet shouldEqual Set("a.conf", "c.conf")
+    parsedFiles.size() shouldEqual 2
+  }
+
+  it should "load parsed config from cache when content of files was not changed" in { fixture =>
+    import fixture._
+    Given("config loaded with cache")
+    writeValueToConfigFile(1)
+    val cacheDirectory = new File(s"target/cache_$i")
+    Option(cacheDirectory.listFiles()).foreach(_.foreach(_.delete()))
+    val parsesCount = new AtomicInteger(0)
+    val options = ReloadOptions.builder().cacheDirectory(cacheDirectory).watchFiles(false).build()
+    def load() = ReloadableConfigFactory.load(List(configFile).asJava, Duration.ofSeconds(60), options,
+      (prev: Optional[Config]) => {
+        parsesCount.incrementAndGet()
+        TransformationResult.withPropagateChangeWhenValueChanged(prev, ConfigFactory.parseFile(configFile))
+      })
+    load().currentValue().getInt("foo.bar") shouldEqual 1
+
+    When("load it again")
+    val loadedAgain = load()
+
+    Then("config should be loaded from cache without parsing")
+    loadedAgain.currentValue().getInt("foo.bar") shouldEqual 1
+    parsesCount.get() shouldEqual 1
+
+    When("content of file is changed and config is loaded again")
+    writeValueToConfigFile(2)
+    val loadedAfterChange = load()
+
+    Then("config should be parsed")
+    loadedAfterChange.currentValue().getInt("foo.bar") shouldEqual 2
+    parsesCount.get() shouldEqual 2
+    cacheDirectory.listFiles() should have size 1
+  }
+
+  it should "share reloads of the same files between processes" in { fixture =>
+    import fixture._
+    Given("config loaded twice with shared directory")
+    writeValueToConfigFile(1)
+    val sharedDirectory = new File(s"target/shared_$i")
+    Option(sharedDirectory.listFiles()).foreach(_.foreach(_.delete()))
+    val leaderParses = new AtomicInteger(0)
+    val followerParses = new AtomicInteger(0)
+    val options = ReloadOptions.builder().sharedDirectory(sharedDirectory).watchFiles(false).build()
+    def load(parsesCount: AtomicInteger) = ReloadableConfigFactory.load(List(configFile).asJava, Duration.ofMillis(200),
+      options, (prev: Optional[Config]) => {
+        parsesCount.incrementAndGet()
+        TransformationResult.withPropagateChangeWhenValueChanged(prev, ConfigFactory.parseFile(configFile))
+      })
+    val leader = load(leaderParses)
+    val follower = load(followerParses)
+
+    Then("the second one should load value published by the first one")
+    follower.currentValue().getInt("foo.bar") shouldEqual 1
+    followerParses.get() shouldEqual 0
+
+    When("write new value to config file")
+    Thread.sleep(1000) // for make sure that last modified was changed
+    writeValueToConfigFile(2)
+
+    Then("only the first one should parse it and the second one should get published value")
+    Thread.sleep(1000)
+    leader.currentValue().getInt("foo.bar") shouldEqual 2
+    follower.currentValue().getInt("foo.bar") shouldEqual 2
+    leaderParses.get() should be >= 2
+    followerParses.get() shouldEqual 0
+  }
+
+  it should "deserialize cached values only of classes allowed by serial filter" in { fixture =>
+    import fixture._
+    Given("parsed value of own class cached on disk")
+    writeValueToConfigFile(1)
+    val cacheDirectory = new File(s"target/cache_filtered_$i")
+    Option(cacheDirectory.listFiles()).foreach(_.foreach(_.delete()))
+    val parsesCount = new AtomicInteger(0)
+    def load(options: ReloadOptions) = ReloadableConfigFactory.load(List(configFile).asJava, Duration.ofSeconds(60),
+      options, (prev: Optional[CachedValue]) => {
+        parsesCount.incrementAndGet()
+        TransformationResult.withPropagateChangeWhenValueChanged(prev,
+          CachedValue(ConfigFactory.parseFile(configFile).getInt("foo.bar")))
+      })
+    val defaultOptions = ReloadOptions.builder().cacheDirectory(cacheDirectory).watchFiles(false).build()
+    load(defaultOptions).currentValue() shouldEqual CachedValue(1)
+
+    When("load it again with default serial filter")
+    load(defaultOptions).currentValue() shouldEqual CachedValue(1)
+
+    Then("cached value should be rejected and files parsed")
+    parsesCount.get() shouldEqual 2
+
+    When("load it again with serial filter allowing its class")
+    val allowingOptions = defaultOptions.toBuilder
+      .serialFilter(java.io.ObjectInputFilter.Config.createFilter("pl.touk.tscreload.*;java.**;!*")).build()
+    load(allowingOptions).currentValue() shouldEqual CachedValue(1)
+
+    Then("value should be loaded from cache")
+    parsesCount.get() shouldEqual 2
+  }
+
+  it should "keep reloader of existing reloadables when reloader is replaced" in { fixture =>
+    import fixture._
+    Given("config loaded with default reloader")
+    val reloadable = loadReloadableConfig(1)
+
+    When("reloader is replaced by one driven by virtual clock")
+    val clock = new VirtualClock(Instant.EPOCH)
+    val virtualReloader = new Reloader(Duration.ofMillis(100), 1, clock, null)
+    val previous = ReloadableConfigFactory.setReloader(virtualReloader)
+    try {
+      val ticks = ReloadableConfigFactory.addTickPropagator(Duration.ofSeconds(1))
+      Thread.sleep(1000) // for make sure that last modified was changed
+      writeValueToConfigFile(2)
+      Thread.sleep(ReloadableConfigFactory.TICK_SECONDS * 1000 + 500)
+
+      Then("existing config should be reloaded in real time")
+      reloadable.currentValue().getInt("foo.bar") shouldEqual 2
+      Thread.sleep(1000) // for make sure that last modified was changed
+      writeValueToConfigFile(3)
+      Thread.sleep(ReloadableConfigFactory.TICK_SECONDS * 1000 + 500)
+      reloadable.currentValue().getInt("foo.bar") shouldEqual 3
+
+      And("new reloadable should follow virtual time")
+      ticks.currentValue() shouldEqual Instant.EPOCH
+      // deadlines are aligned to multiples of interval
+      (1 to 25).foreach { _ =>
+        clock.advance(Duration.ofMillis(100))
+        virtualReloader.tick()
+      }
+      ticks.currentValue() shouldEqual Instant.EPOCH.plusMillis(2000)
+    } finally {
+      ReloadableConfigFactory.setReloader(previous)
+    }
+  }
+
+  it should "load many configs in parallel" in { fixture =>
+    import fixture._
+    Given("several slowly parsed config files")
+    val files = (1 to 4).map(n => new File(s"target/foo_${i}_$n.conf"))
+    files.zipWithIndex.foreach { case (file, n) => writeValueToConfigFile(file, n) }
+    val loads = files.map { file =>
+      new java.util.function.Supplier[Reloadable[Config]] {
+        override def get(): Reloadable[Config] = ReloadableConfigFactory.load(List(file).asJava, Duration.ofSeconds(0),
+          new java.util.function.Supplier[Config] {
+            override def get(): Config = {
+              Thread.sleep(1000)
+              ConfigFactory.parseFile(file)
+            }
+          })
+      }
+    }
+
+    When("load all of them")
+    val start = System.currentTimeMillis()
+    val loaded = ReloadableConfigFactory.loadAll[Config](loads.asJava).get()
+
+    Then("loading should take time of the slowest one")
+    (System.currentTimeMillis() - start) should be < 2000L
+    loaded.asScala.map(_.currentValue().getInt("foo.bar")) shouldEqual (0 until 4)
+  }
+
+  it should "reload config served over http using conditional requests" in { fixture =>
+    Given("http server serving config with ETag")
+    @volatile var content = "foo.bar: 1"
+    val fullResponses = new AtomicInteger(0)
+    val notModifiedResponses = new AtomicInteger(0)
+    val server = HttpServer.create(new InetSocketAddress("localhost", 0), 0)
+    server.createContext("/config", new HttpHandler {
+      override def handle(exchange: HttpExchange): Unit = {
+        val body = content.getBytes("UTF-8")
+        val etag = "\"" + content.hashCode + "\""
+        if (exchange.getRequestHeaders.getFirst("If-None-Match") == etag) {
+          notModifiedResponses.incrementAndGet()
+          exchange.sendResponseHeaders(304, -1)
+        } else {
+          fullResponses.incrementAndGet()
+          exchange.getResponseHeaders.add("ETag", etag)
+          exchange.sendResponseHeaders(200, body.length)
+          exchange.getResponseBody.write(body)
+        }
+        exchange.close()
+      }
+    })
+    server.start()
+    val reloadable = TscReloadableConfigFactory.parseUrl(
+      URI.create(s"http://localhost:${server.getAddress.getPort}/config"), Duration.ofMillis(200))
+    try {
+      reloadable.currentValue().getInt("foo.bar") shouldEqual 1
+
+      When("config is not changed for a while")
+      Thread.sleep(1000)
+
+      Then("checks should get only not modified responses")
+      fullResponses.get() shouldEqual 1
+      notModifiedResponses.get() should be > 0
+
+      When("config is changed")
+      content = "foo.bar: 2"
+      Thread.sleep(1000)
+
+      Then("config should be reloaded")
+      reloadable.currentValue().getInt("foo.bar") shouldEqual 2
+      fullResponses.get() shouldEqual 2
+
+      When("reloadable is closed")
+      reloadable.close()
+      Thread.sleep(300) // for make sure that check in progress was finished
+      val responses = fullResponses.get() + notModifiedResponses.get()
+
+      Then("source should not be polled anymore")
+      Thread.sleep(1000)
+      fullResponses.get() + notModifiedResponses.get() shouldEqual responses
+      reloadable.currentValue().getInt("foo.bar") shouldEqual 2
+    } finally {
+      reloadable.close()
+      server.stop(0)
+    }
+  }
+
+  it should "reload independent configs concurrently when executor is given" in { fixture =>
+    import fixture._
+    Given("slowly and quickly reloaded configs sharing executor")
+    val executor = Executors.newCachedThreadPool()
+    val options = ReloadOptions.builder().executor(executor).build()
+    try {
+      val slowConfigFile = new File(s"target/foo_${i}_slow.conf")
+      writeValueToConfigFile(1)
+      writeValueToConfigFile(slowConfigFile, 1)
+      val slow = ReloadableConfigFactory.load(List(slowConfigFile).asJava, Duration.ofSeconds(0), options,
+        (prev: Optional[Config]) => {
+          if (prev.isPresent) Thread.sleep(5000)
+          TransformationResult.withPropagateChangeWhenValueChanged(prev, ConfigFactory.parseFile(slowConfigFile))
+        })
+      val quick = TscReloadableConfigFactory.parseFile(configFile, Duration.ofSeconds(0), options)
+
+      When("write new values to both config files")
+      val nextFooBarValue = 2
+      Thread.sleep(1000) // for make sure that last modified was changed
+      writeValueToConfigFile(slowConfigFile, nextFooBarValue)
+      writeValueToConfigFile(nextFooBarValue)
+
+      Then("quickly reloaded config should not wait for slow one")
+      Thread.sleep(1000)
+      quick.currentValue().getInt("foo.bar") shouldEqual nextFooBarValue
+      slow.currentValue().getInt("foo.bar") shouldEqual 1
+    } finally {
+      executor.shutdownNow()
+    }
+  }
+
+  it should "recompute path subscription only when subtree at its path was changed" in { fixture =>
+    import fixture._
+    Given("reloadable config with values subscribed by paths")
+    val reloadable = loadReloadableConfig(1)
+    var fooBarEvaluationCount = 0
+    val fooBar = TscReloadableConfigFactory.atPath(reloadable, "foo.bar").map { cfg: Config =>
+      fooBarEvaluationCount += 1
+      cfg.getInt("foo.bar")
+    }
+    var otherEvaluationCount = 0
+    val other = TscReloadableConfigFactory.atPath(reloadable, "other").map { cfg: Config =>
+      otherEvaluationCount += 1
+      cfg.hasPath("other")
+    }
+
+    When("write new value to config file")
+    Thread.sleep(1000) // for make sure that last modified was changed
+    writeValueToConfigFile(2)
+
+    Then("only subscription of changed path should be recomputed")
+    Thread.sleep(ReloadableConfigFactory.TICK_SECONDS * 1000 + 500)
+    fooBar.currentValue() shouldEqual 2
+    fooBarEvaluationCount shouldEqual 2
+    other.currentValue() shouldEqual false
+    otherEvaluationCount shouldEqual 1
+  }
+
   it should "cache evaluation of nested values" in { fixture =>
     import fixture._
     Given("reloadable initial config")
@@ -105,6 +616,304 @@ class ReloadableSpec extends fixture.FlatSpec with Matchers with GivenWhenThen {
     evaluationCount shouldEqual 1
   }
 
+  it should "reload primitive nested values after change" in { fixture =>
+    import fixture._
+    Given("reloadable initial config")
+    val reloadable = loadReloadableConfig(1)
+
+    When("transform reloadable config to primitive values")
+    val reloadableFooBar = reloadable.mapToInt(new ToIntFunction[Config] {
+      override def applyAsInt(cfg: Config): Int = cfg.getInt("foo.bar")
+    })
+    val reloadableFooBarEnabled = reloadable.mapToBoolean(new Predicate[Config] {
+      override def test(cfg: Config): Boolean = cfg.getInt("foo.bar") > 1
+    })
+    var notificationsCount = 0
+    val doubled = reloadableFooBar.map { v: Integer =>
+      notificationsCount += 1
+      v * 2
+    }
+
+    Then("values should be same as initial")
+    reloadableFooBar.getAsInt shouldEqual 1
+    reloadableFooBarEnabled.getAsBoolean shouldBe false
+
+    When("write new value to config file")
+    Thread.sleep(1000) // for make sure that last modified was changed
+    writeValueToConfigFile(2)
+
+    Then("after reload values should be same as new value")
+    Thread.sleep(ReloadableConfigFactory.TICK_SECONDS * 1000 + 500)
+    reloadableFooBar.getAsInt shouldEqual 2
+    reloadableFooBar.currentValue() shouldEqual 2
+    reloadableFooBarEnabled.getAsBoolean shouldBe true
+    doubled.currentValue() shouldEqual 4
+    notificationsCount shouldEqual 2
+  }
+
+  it should "not expose primitive value before it is written as current value" in { fixture =>
+    Given("primitive value derived from ticks of virtual reloader")
+    val clock = new VirtualClock(Instant.EPOCH)
+    val virtualReloader = new Reloader(Duration.ofMillis(1), 1, clock, null)
+    val previous = ReloadableConfigFactory.setReloader(virtualReloader)
+    try {
+      val ticks = ReloadableConfigFactory.addTickPropagator(Duration.ofMillis(1))
+      val millis = ticks.mapToLong(new ToLongFunction[Instant] {
+        override def applyAsLong(tick: Instant): Long = tick.toEpochMilli
+      })
+      @volatile var propagating = true
+      val aheadReads = new AtomicInteger(0)
+      val reader = new Thread(new Runnable {
+        override def run(): Unit = {
+          while (propagating) {
+            val primitive = millis.getAsLong
+            if (primitive > millis.currentValue()) aheadReads.incrementAndGet()
+          }
+        }
+      })
+      reader.start()
+
+      When("value is changed many times while it is read")
+      (1 to 200000).foreach { _ =>
+        clock.advance(Duration.ofMillis(1))
+        virtualReloader.tick()
+      }
+      propagating = false
+      reader.join()
+
+      Then("primitive value should never be ahead of current value")
+      aheadReads.get() shouldEqual 0
+      millis.getAsLong shouldEqual millis.currentValue()
+    } finally {
+      ReloadableConfigFactory.setReloader(previous)
+    }
+  }
+
+  it should "provide consistent snapshot of values during propagation of changes" in { fixture =>
+    import fixture._
+    Given("two values of the same config, the second one slowly computed")
+    val reloadable = loadReloadableConfig(1)
+    val first = reloadable.map((cfg: Config) => cfg.getInt("foo.bar"))
+    val second = reloadable.map { cfg: Config =>
+      Thread.sleep(200)
+      cfg.getInt("foo.bar")
+    }
+
+    When("take snapshots during change of config")
+    val inconsistentSnapshots = new AtomicInteger(0)
+    val snapshotsCount = new AtomicInteger(0)
+    val reader = new Thread(new Runnable {
+      override def run(): Unit = {
+        val end = System.currentTimeMillis() + 3000
+        while (System.currentTimeMillis() < end) {
+          val snapshot = Reloadable.snapshot(first, second)
+          if (snapshot._1 != snapshot._2) inconsistentSnapshots.incrementAndGet()
+          snapshotsCount.incrementAndGet()
+        }
+      }
+    })
+    reader.start()
+    Thread.sleep(1000) // for make sure that last modified was changed
+    writeValueToConfigFile(2)
+    reader.join()
+
+    Then("all snapshots should be consistent")
+    snapshotsCount.get() should be > 0
+    inconsistentSnapshots.get() shouldEqual 0
+    Reloadable.snapshot(first, second) shouldEqual new io.vavr.Tuple2(2, 2)
+  }
+
+  it should "not delay snapshot by propagation of changes in unrelated graph" in { fixture =>
+    import fixture._
+    Given("snapshotted values of config and other config with slowly computed value")
+    val reloadable = loadReloadableConfig(1)
+    val first = reloadable.map((cfg: Config) => cfg.getInt("foo.bar"))
+    val second = reloadable.map((cfg: Config) => cfg.getInt("foo.bar") * 2)
+    val otherConfigFile = new File(s"target/foo_${i}_other.conf")
+    writeValueToConfigFile(otherConfigFile, 1)
+    val other = TscReloadableConfigFactory.parseFile(otherConfigFile, Duration.ofSeconds(0))
+    val slow = other.map { cfg: Config =>
+      if (cfg.getInt("foo.bar") == 2) Thread.sleep(3000)
+      cfg.getInt("foo.bar")
+    }
+
+    When("change of other config is propagated")
+    Thread.sleep(1000) // for make sure that last modified was changed
+    writeValueToConfigFile(otherConfigFile, 2)
+    Thread.sleep(1000)
+
+    Then("snapshot should be taken without waiting for it")
+    val start = System.currentTimeMillis()
+    Reloadable.snapshot(first, second) shouldEqual new io.vavr.Tuple2(1, 2)
+    (System.currentTimeMillis() - start) should be < 500L
+    Thread.sleep(2500)
+    slow.currentValue() shouldEqual 2
+  }
+
+  it should "publish only latest values to slow subscriber" in { fixture =>
+    Given("frequently changed reloadable")
+    val ticks = ReloadableConfigFactory.addTickPropagator(Duration.ofMillis(100))
+
+    When("slow subscriber subscribes to its publisher")
+    val received = new java.util.concurrent.CopyOnWriteArrayList[Instant]()
+    @volatile var subscription: Flow.Subscription = null
+    ticks.asPublisher().subscribe(new Flow.Subscriber[Instant] {
+      override def onSubscribe(s: Flow.Subscription): Unit = {
+        subscription = s
+        s.request(1)
+      }
+      override def onNext(item: Instant): Unit = {
+        received.add(item)
+        Thread.sleep(500)
+        subscription.request(1)
+      }
+      override def onError(throwable: Throwable): Unit = ()
+      override def onComplete(): Unit = ()
+    })
+    Thread.sleep(2200)
+    // endless delivery would occupy threads of common pool
+    subscription.cancel()
+
+    Then("subscriber should get current value and latest values skipping intermediate ones")
+    val values = received.asScala.toList
+    values.size should (be >= 3 and be <= 6)
+    values.zip(values.tail).foreach { case (prev, next) =>
+      java.time.Duration.between(prev, next).toMillis should be >= 300L
+    }
+  }
+
+  it should "signal error of invalid request serially with values" in { fixture =>
+    Given("subscriber receiving value slowly")
+    val ticks = ReloadableConfigFactory.addTickPropagator(Duration.ofMillis(100))
+    @volatile var subscription: Flow.Subscription = null
+    val inOnNext = new AtomicInteger(0)
+    val errorDuringOnNext = new AtomicInteger(0)
+    val errorThread = new java.util.concurrent.atomic.AtomicReference[Thread]()
+    ticks.asPublisher().subscribe(new Flow.Subscriber[Instant] {
+      override def onSubscribe(s: Flow.Subscription): Unit = {
+        subscription = s
+        s.request(1)
+      }
+      override def onNext(item: Instant): Unit = {
+        inOnNext.incrementAndGet()
+        Thread.sleep(500)
+        inOnNext.decrementAndGet()
+      }
+      override def onError(throwable: Throwable): Unit = {
+        errorDuringOnNext.addAndGet(inOnNext.get())
+        errorThread.set(Thread.currentThread())
+      }
+      override def onComplete(): Unit = ()
+    })
+
+    When("non-positive number of values is requested during delivery of value")
+    Thread.sleep(200)
+    subscription.request(0)
+
+    Then("error should be signalled after delivery of value, not on requesting thread")
+    Thread.sleep(1000)
+    errorThread.get() should not be null
+    errorThread.get() should not be Thread.currentThread()
+    errorDuringOnNext.get() shouldEqual 0
+  }
+
+  it should "evaluate lazy nested value only when it is read after change" in { fixture =>
+    import fixture._
+    Given("reloadable initial config")
+    val reloadable = loadReloadableConfig(1)
+
+    When("transform reloadable config lazily")
+    val evaluationCount = new AtomicInteger(0)
+    val reloadableFooBar = reloadable.lazyMap { cfg: Config =>
+      evaluationCount.incrementAndGet()
+      cfg.getInt("foo.bar")
+    }
+
+    Then("value should not be evaluated before it is read")
+    evaluationCount.get() shouldEqual 0
+    reloadableFooBar.currentValue() shouldEqual 1
+    reloadableFooBar.currentValue() shouldEqual 1
+    evaluationCount.get() shouldEqual 1
+
+    When("write new value to config file")
+    Thread.sleep(1000) // for make sure that last modified was changed
+    writeValueToConfigFile(2)
+    Thread.sleep(ReloadableConfigFactory.TICK_SECONDS * 1000 + 500)
+
+    Then("value should be evaluated once again only after it is read")
+    evaluationCount.get() shouldEqual 1
+    reloadableFooBar.currentValue() shouldEqual 2
+    reloadableFooBar.currentValue() shouldEqual 2
+    evaluationCount.get() shouldEqual 2
+  }
+
+  it should "evaluate lazy value of lazy parent after change of root" in { fixture =>
+    import fixture._
+    Given("lazy value of lazy nested value")
+    val reloadable = loadReloadableConfig(1)
+    val fooBarTimes10 = reloadable.lazyMap { cfg: Config => cfg.getInt("foo.bar") * 10 }
+    val fooBarTimes10Plus1 = fooBarTimes10.lazyMap { v: Int => v + 1 }
+    fooBarTimes10Plus1.currentValue() shouldEqual 11
+
+    When("write new value to config file")
+    Thread.sleep(1000) // for make sure that last modified was changed
+    writeValueToConfigFile(2)
+    Thread.sleep(ReloadableConfigFactory.TICK_SECONDS * 1000 + 500)
+
+    Then("first read of nested lazy value should see new value")
+    fooBarTimes10Plus1.currentValue() shouldEqual 21
+    fooBarTimes10.currentValue() shouldEqual 20
+  }
+
+  it should "compare values by fingerprints before deep comparison" in { fixture =>
+    import fixture._
+    Given("reloadable config propagating each reload and fingerprinted nested value")
+    val reloadable = loadReloadableConfig(1, propagateOnlyIfChanged = false)
+    val equalsCount = new AtomicInteger(0)
+    val nested = reloadable.map((cfg: Config) => new ExpensiveValue(cfg.getInt("foo.bar"), equalsCount))
+      .fingerprinted(new ToLongFunction[ExpensiveValue] {
+        override def applyAsLong(value: ExpensiveValue): Long = value.bar
+      })
+
+    When("value is changed")
+    Thread.sleep(1000) // for make sure that last modified was changed
+    writeValueToConfigFile(2)
+    Thread.sleep(ReloadableConfigFactory.TICK_SECONDS * 1000 + 500)
+
+    Then("change should be detected without deep comparison")
+    nested.currentValue().bar shouldEqual 2
+    equalsCount.get() shouldEqual 0
+
+    When("file is written again with the same value")
+    writeValueToConfigFile(2)
+    Thread.sleep(ReloadableConfigFactory.TICK_SECONDS * 1000 + 500)
+
+    Then("values should be compared deeply once")
+    equalsCount.get() shouldEqual 1
+  }
+
+  it should "compare parsed values by fingerprints before deep comparison" in { fixture =>
+    import fixture._
+    Given("fingerprinted config parsed to value compared with previous one")
+    writeValueToConfigFile(1)
+    val equalsCount = new AtomicInteger(0)
+    val reloadable = ReloadableConfigFactory.load(List(configFile).asJava, Duration.ofSeconds(0),
+      (prev: Optional[ExpensiveValue]) => TransformationResult.withPropagateChangeWhenValueChanged(prev,
+        new ExpensiveValue(ConfigFactory.parseFile(configFile).getInt("foo.bar"), equalsCount)))
+      .fingerprinted(new ToLongFunction[ExpensiveValue] {
+        override def applyAsLong(value: ExpensiveValue): Long = value.bar
+      })
+
+    When("value is changed")
+    Thread.sleep(1000) // for make sure that last modified was changed
+    writeValueToConfigFile(2)
+    Thread.sleep(ReloadableConfigFactory.TICK_SECONDS * 1000 + 500)
+
+    Then("change should be detected without deep comparison")
+    reloadable.currentValue().bar shouldEqual 2
+    equalsCount.get() shouldEqual 0
+  }
+
   it should "be able to handle previous value" in { fixture =>
     import fixture._
     Given("reloadable initial config")
@@ -204,6 +1013,64 @@ class ReloadableSpec extends fixture.FlatSpec with Matchers with GivenWhenThen {
     evaluationCount shouldEqual 2
   }
 
+  it should "not parse config again if content of file was not changed when content hash is enabled" in { fixture =>
+    import fixture._
+    Given("reloadable initial config with content hash enabled")
+    val initialValue = 1
+    writeValueToConfigFile(initialValue)
+    var parseCount = 0
+    val reloadable = ReloadableConfigFactory.load(List(configFile).asJava, Duration.ofSeconds(0), ReloadOptions.builder().contentHash(true).build(),
+      (prev: Optional[Config]) => {
+        parseCount += 1
+        new TransformationResult(ConfigFactory.parseFile(configFile), true)
+      })
+
+    When("write the same value to config file")
+    Thread.sleep(1000) // for make sure that last modified was changed
+    writeValueToConfigFile(initialValue)
+
+    Then("config should be parsed only once")
+    Thread.sleep(ReloadableConfigFactory.TICK_SECONDS * 1000 + 500)
+    reloadable.currentValue().getInt("foo.bar") shouldEqual initialValue
+    parseCount shouldEqual 1
+  }
+
+  it should "report reload metrics" in { fixture =>
+    import fixture._
+    Given("registered metrics")
+    val transformedNames = new java.util.concurrent.ConcurrentLinkedQueue[String]()
+    val propagations = new AtomicInteger(0)
+    val observersCounts = new java.util.concurrent.ConcurrentHashMap[String, Int]()
+    ReloadableConfigFactory.setMetrics(new CompositeReloadMetrics(List[ReloadMetrics](new JfrReloadMetrics, new ReloadMetrics {
+      override def transformed(reloadable: Reloadable[_], durationNanos: Long, changePropagated: Boolean): Unit =
+        transformedNames.add(reloadable.getName)
+      override def propagated(recomputedNodes: Int, failedNodes: Int, durationNanos: Long): Unit =
+        propagations.incrementAndGet()
+      override def observersCountChanged(observable: AnyRef, observersCount: Int): Unit = observable match {
+        case reloadable: Reloadable[_] => observersCounts.put(reloadable.getName, observersCount)
+        case _ =>
+      }
+    }).asJava))
+    try {
+      val reloadableFooBar = loadReloadableConfig(1).map((cfg: Config) => cfg.getInt("foo.bar")).named("fooBar")
+
+      Then("observers of config should be counted")
+      observersCounts.get(configFile.getPath) shouldEqual 1
+
+      When("write new value to config file")
+      Thread.sleep(1000) // for make sure that last modified was changed
+      writeValueToConfigFile(2)
+
+      Then("transformations of config and derived value should be reported")
+      Thread.sleep(ReloadableConfigFactory.TICK_SECONDS * 1000 + 500)
+      reloadableFooBar.currentValue() shouldEqual 2
+      transformedNames.asScala.toList should contain allOf(configFile.getPath, "fooBar")
+      propagations.get() should be > 0
+    } finally {
+      ReloadableConfigFactory.setMetrics(ReloadMetrics.NOOP)
+    }
+  }
+
   it should "cooperate with ficus" in { fixture =>
     import fixture._
     Given("reloadable initial config")
@@ -247,8 +1114,10 @@ class ReloadableSpec extends fixture.FlatSpec with Matchers with GivenWhenThen {
           (prev: Optional[Config]) => new TransformationResult(ConfigFactory.parseFile(configFile), true))
     }
 
-    def writeValueToConfigFile(value: Int): Unit = {
-      val wrt = new PrintWriter(configFile, "UTF-8")
+    def writeValueToConfigFile(value: Int): Unit = writeValueToConfigFile(configFile, value)
+
+    def writeValueToConfigFile(file: File, value: Int): Unit = {
+      val wrt = new PrintWriter(file, "UTF-8")
       try {
         wrt.write(
           s"""foo {
@@ -263,4 +1132,18 @@ class ReloadableSpec extends fixture.FlatSpec with Matchers with GivenWhenThen {
 
   case class Foo(bar: Int)
 
+  class ExpensiveValue(val bar: Int, equalsCount: AtomicInteger) {
+    override def equals(other: Any): Boolean = {
+      equalsCount.incrementAndGet()
+      other match {
+        case value: ExpensiveValue => value.bar == bar
+        case _ => false
+      }
+    }
+
+    override def hashCode(): Int = bar
+  }
+
 }
+
+case class CachedValue(fooBar: Int)
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl
+
+import java.io.File
+import java.nio.file.Files
+import java.time.{Duration, Instant}
+import java.util.function.Supplier
+
+import org.scalatest.{FlatSpec, GivenWhenThen, Matchers}
+import pl.touk.tscreload.{ReloadOptions, ReloadableConfigFactory}
+
+import scala.collection.JavaConverters._
+
+class FileStatRegistrySpec extends FlatSpec with Matchers with GivenWhenThen {
+
+  it should "stat file scanned by many reloadables once per tick" in {
+    Given("several reloadables scanning the same file on virtual ticks")
+    val file = File.createTempFile("stat", ".conf")
+    file.deleteOnExit()
+    Files.write(file.toPath, "foo.bar = 1".getBytes)
+    val clock = new VirtualClock(Instant.EPOCH)
+    val reloader = new Reloader(Duration.ofMillis(100), 1, clock, null)
+    val previous = ReloadableConfigFactory.setReloader(reloader)
+    try {
+      val options = ReloadOptions.builder().watchFiles(false).build()
+      val reloadables = (1 to 10).map { _ =>
+        ReloadableConfigFactory.load(List(file).asJava, Duration.ofMillis(100), options, new Supplier[String] {
+          override def get(): String = "foo"
+        })
+      }
+      val stat = FileStatRegistry.forPath(file.toPath.toAbsolutePath.normalize())
+      val readsBefore = stat.reads()
+
+      When("reloader ticks")
+      val ticks = 20
+      (1 to ticks).foreach { _ =>
+        clock.advance(Duration.ofMillis(100))
+        reloader.tick()
+      }
+
+      Then("file is read at most once per tick")
+      val reads = stat.reads() - readsBefore
+      reads should be > 0L
+      reads should be <= ticks.toLong
+      reloadables.foreach(_.currentValue() shouldEqual "foo")
+    } finally {
+      ReloadableConfigFactory.setReloader(previous)
+      reloader.cancel(true)
+    }
+  }
+
+  it should "stat file scanned by reloadables registered at different ticks once per check cycle" in {
+    Given("reloadables of the same file registered one tick after another")
+    val file = File.createTempFile("stat", ".conf")
+    file.deleteOnExit()
+    Files.write(file.toPath, "foo.bar = 1".getBytes)
+    val clock = new VirtualClock(Instant.EPOCH)
+    val reloader = new Reloader(Duration.ofMillis(100), 1, clock, null)
+    val previous = ReloadableConfigFactory.setReloader(reloader)
+    try {
+      val options = ReloadOptions.builder().watchFiles(false).build()
+      val reloadables = (1 to 10).map { _ =>
+        val reloadable = ReloadableConfigFactory.load(List(file).asJava, Duration.ofSeconds(1), options,
+          new Supplier[String] {
+            override def get(): String = "foo"
+          })
+        clock.advance(Duration.ofMillis(100))
+        reloader.tick()
+        reloadable
+      }
+      val stat = FileStatRegistry.forPath(file.toPath.toAbsolutePath.normalize())
+      val readsBefore = stat.reads()
+
+      When("reloader ticks through several check intervals")
+      (1 to 50).foreach { _ =>
+        clock.advance(Duration.ofMillis(100))
+        reloader.tick()
+      }
+
+      Then("file is read once per check cycle")
+      stat.reads() - readsBefore shouldEqual 5L
+      reloadables.foreach(_.currentValue() shouldEqual "foo")
+    } finally {
+      ReloadableConfigFactory.setReloader(previous)
+      reloader.cancel(true)
+    }
+  }
+
+}
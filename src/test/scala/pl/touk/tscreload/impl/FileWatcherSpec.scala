@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl
+
+import java.nio.file.Files
+
+import org.scalatest.{FlatSpec, GivenWhenThen, Matchers}
+
+import scala.collection.JavaConverters._
+
+class FileWatcherSpec extends FlatSpec with Matchers with GivenWhenThen {
+
+  private val watcher = FileWatcher.instance().get()
+
+  it should "unregister directory when its last observer is collected" in {
+    Given("directory watched by retained and not retained observer")
+    val directory = Files.createTempDirectory("watched")
+    var retained = new ChangesObserver
+    FileWatcher.watch(directory, retained) shouldBe true
+    FileWatcher.watch(directory, new ChangesObserver) shouldBe true
+
+    When("not retained observer is collected")
+    collectGarbage()
+    watcher.releaseUnobservedDirectories()
+
+    Then("directory is still watched")
+    watcher.isWatched(directory) shouldBe true
+
+    When("retained observer is collected too")
+    retained = null
+    collectGarbage()
+    watcher.releaseUnobservedDirectories()
+
+    Then("directory is not watched anymore")
+    watcher.isWatched(directory) shouldBe false
+  }
+
+  it should "roll back registration when some of directories can't be watched" in {
+    Given("existing and not existing directory")
+    val existing = Files.createTempDirectory("watched")
+    val notExisting = existing.resolveSibling(existing.getFileName + "-not-existing")
+    val observer = new ChangesObserver
+
+    When("both are watched")
+    val watched = FileWatcher.watch(List(existing, notExisting).asJava, observer)
+
+    Then("watching fails")
+    watched shouldBe false
+
+    And("existing directory isn't watched either")
+    watcher.isWatched(existing) shouldBe false
+    watcher.isWatched(notExisting) shouldBe false
+  }
+
+  private def collectGarbage(): Unit = {
+    val deadline = System.currentTimeMillis() + 1000
+    while (System.currentTimeMillis() < deadline) {
+      System.gc()
+      Thread.sleep(10)
+    }
+  }
+
+}
+
+class ChangesObserver extends AbstractObserver[FileWatcher.Change] {
+  override def notifyChanged(changedValue: FileWatcher.Change): Unit = {}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{ConcurrentLinkedQueue, CountDownLatch, Executors, TimeUnit}
+
+import org.scalatest.{FlatSpec, GivenWhenThen, Matchers}
+
+import scala.collection.JavaConverters._
+
+class ObservableSpec extends FlatSpec with Matchers with GivenWhenThen {
+
+  it should "notify observers added concurrently with notification" in {
+    Given("observable notified continuously")
+    val observable = new TestObservable
+    val threads = 8
+    val perThread = 500
+    val added = new ConcurrentLinkedQueue[CountingObserver]()
+    val pool = Executors.newFixedThreadPool(threads + 1)
+    try {
+      val start = new CountDownLatch(1)
+      @volatile var adding = true
+      val notifier = pool.submit(new Runnable {
+        override def run(): Unit = {
+          start.await()
+          while (adding) observable.notifyObservers(0)
+        }
+      })
+
+      When("observers are added from many threads")
+      val adders = (1 to threads).map { _ =>
+        pool.submit(new Runnable {
+          override def run(): Unit = {
+            start.await()
+            (1 to perThread).foreach { _ =>
+              val observer = new CountingObserver(0)
+              added.add(observer)
+              observable.addWeakObserver(observer)
+            }
+          }
+        })
+      }
+      start.countDown()
+      adders.foreach(_.get(10, TimeUnit.SECONDS))
+      adding = false
+      notifier.get(10, TimeUnit.SECONDS)
+
+      Then("none of them is lost")
+      observable.getObserversCount shouldEqual threads * perThread
+
+      And("all of them are notified")
+      val before = added.asScala.map(_.notifications.get()).toList
+      observable.notifyObservers(1)
+      added.asScala.map(_.notifications.get()).toList shouldEqual before.map(_ + 1)
+    } finally {
+      pool.shutdownNow()
+    }
+  }
+
+  it should "expunge collected observers" in {
+    Given("observable with retained and not retained observer")
+    val observable = new TestObservable
+    val retained = new CountingObserver(0)
+    observable.addWeakObserver(retained)
+    observable.addWeakObserver(new CountingObserver(1))
+    observable.getObserversCount shouldEqual 2
+
+    When("not retained observer is collected")
+    val deadline = System.currentTimeMillis() + 10000
+    while (observable.getObserversCount > 1 && System.currentTimeMillis() < deadline) {
+      System.gc()
+      Thread.sleep(10)
+    }
+
+    Then("it is removed from observers")
+    observable.getObserversCount shouldEqual 1
+
+    And("retained observer is still notified")
+    observable.notifyObservers(0)
+    retained.notifications.get() shouldEqual 1
+  }
+
+  it should "deduplicate observers by identity" in {
+    Given("observable and two equal observers")
+    val observable = new TestObservable
+    val first = new CountingObserver(0)
+    val second = new CountingObserver(0)
+    first shouldEqual second
+
+    When("the same observer is added twice and equal observer once")
+    observable.addWeakObserver(first)
+    observable.addWeakObserver(first)
+    observable.addWeakObserver(second)
+
+    Then("each instance is kept once")
+    observable.getObserversCount shouldEqual 2
+
+    And("each instance is notified once")
+    observable.notifyObservers(0)
+    first.notifications.get() shouldEqual 1
+    second.notifications.get() shouldEqual 1
+  }
+
+}
+
+class TestObservable extends Observable[Int] {
+  override def notifyObservers(changedValue: Int): Unit = super.notifyObservers(changedValue)
+}
+
+case class CountingObserver(id: Int) extends AbstractObserver[Int] {
+  val notifications = new AtomicInteger(0)
+
+  override def notifyChanged(changedValue: Int): Unit = notifications.incrementAndGet()
+}
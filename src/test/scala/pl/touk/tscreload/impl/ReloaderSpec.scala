@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl
+
+import java.time.{Duration, Instant}
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.scalatest.{FlatSpec, GivenWhenThen, Matchers}
+
+import scala.collection.JavaConverters._
+
+class ReloaderSpec extends FlatSpec with Matchers with GivenWhenThen {
+
+  it should "notify observers from other shards when one of observers is slow" in {
+    val reloader = new Reloader(Duration.ofMillis(50), 4)
+    try {
+      val slow = new CountingObserver(sleepMillis = 2000)
+      reloader.addWeakObserver(slow, Duration.ofMillis(50))
+      val fast = (1 to 1000).map(_ => new CountingObserver(sleepMillis = 0))
+      fast.foreach(reloader.addWeakObserver(_, Duration.ofMillis(100)))
+
+      Thread.sleep(1000)
+
+      slow.count.get() shouldEqual 1
+      // observers in the same shard as the slow one are delayed
+      fast.count(_.count.get() >= 5) should be >= (fast.size * 3 / 4)
+    } finally {
+      reloader.cancel(true)
+    }
+  }
+
+  it should "notify observers in virtual time when ticks are triggered manually" in {
+    Given("reloader driven by virtual clock")
+    val clock = new VirtualClock(Instant.EPOCH)
+    val reloader = new Reloader(Duration.ofMillis(100), 1, clock, null)
+    val periodic = new CountingObserver(sleepMillis = 0)
+    reloader.addWeakObserver(periodic, Duration.ofSeconds(1))
+    val once = new CountingObserver(sleepMillis = 0)
+    reloader.addWeakObserverOnce(once, Duration.ofMillis(500))
+
+    When("advance clock by one hour tick after tick")
+    (1 to 36000).foreach { _ =>
+      clock.advance(Duration.ofMillis(100))
+      reloader.tick()
+    }
+
+    Then("observers should be notified synchronously according to virtual time")
+    periodic.count.get() shouldEqual 3600
+    once.count.get() shouldEqual 1
+
+    When("advance clock by one hour at once")
+    clock.advance(Duration.ofHours(1))
+    reloader.tick()
+
+    Then("missed ticks should be caught up")
+    periodic.count.get() shouldEqual 7200
+  }
+
+  it should "notify observers with the same interval on the same ticks regardless of registration time" in {
+    Given("observers registered at different ticks of virtual clock")
+    val clock = new VirtualClock(Instant.EPOCH)
+    val reloader = new Reloader(Duration.ofMillis(100), 1, clock, null)
+    val observers = (1 to 10).map { _ =>
+      val observer = new RecordingObserver
+      reloader.addWeakObserver(observer, Duration.ofSeconds(1))
+      clock.advance(Duration.ofMillis(100))
+      reloader.tick()
+      observer
+    }
+
+    When("advance clock by several intervals")
+    (1 to 50).foreach { _ =>
+      clock.advance(Duration.ofMillis(100))
+      reloader.tick()
+    }
+
+    Then("all observers should be notified with the same instants")
+    val expected = (1 to 6).map(n => Instant.EPOCH.plusSeconds(n)).toList
+    observers.foreach(_.instants.asScala.toList shouldEqual expected)
+  }
+
+  it should "start threads only when they are needed" in {
+    def threads(prefix: String) = Thread.getAllStackTraces.keySet.asScala.count(_.getName.startsWith(prefix))
+    val tickersBefore = threads("tsc-reload-ticker")
+    val checkersBefore = threads("tsc-reload-checker-")
+
+    Given("reloader with several shards")
+    val reloader = new Reloader(Duration.ofMillis(50), 4)
+    try {
+      Then("no threads should be started before observers are registered")
+      Thread.sleep(200)
+      threads("tsc-reload-ticker") shouldEqual tickersBefore
+
+      When("one observer is registered")
+      val observer = new CountingObserver(sleepMillis = 0)
+      reloader.addWeakObserver(observer, Duration.ofMillis(50))
+      Thread.sleep(500)
+
+      Then("it should be notified on the ticker thread")
+      observer.count.get() should be > 0
+      threads("tsc-reload-ticker") shouldEqual tickersBefore + 1
+      threads("tsc-reload-checker-") shouldEqual checkersBefore
+
+      When("observers are registered in other shards")
+      val others = (1 to 10).map(_ => new CountingObserver(sleepMillis = 0))
+      others.foreach(reloader.addWeakObserver(_, Duration.ofMillis(50)))
+      Thread.sleep(500)
+
+      Then("shards should be advanced by checker threads")
+      others.foreach(_.count.get() should be > 0)
+      threads("tsc-reload-checker-") should be > checkersBefore
+    } finally {
+      reloader.cancel(true)
+    }
+  }
+
+  it should "release threads when cancelled" in {
+    Given("running reloader with several shards")
+    def reloaderThreads() = Thread.getAllStackTraces.keySet.asScala.count(_.getName.startsWith("tsc-reload-"))
+    val threadsBefore = reloaderThreads()
+    val reloader = new Reloader(Duration.ofMillis(50), 4)
+    val observers = (1 to 100).map(_ => new CountingObserver(sleepMillis = 0))
+    observers.foreach(reloader.addWeakObserver(_, Duration.ofMillis(50)))
+    Thread.sleep(500)
+    reloaderThreads() should be > threadsBefore
+
+    When("cancel it")
+    reloader.cancel(false)
+    Thread.sleep(500)
+
+    Then("its scheduler and checker threads should be stopped")
+    reloaderThreads() shouldEqual threadsBefore
+  }
+
+  class RecordingObserver extends AbstractObserver[Instant] {
+    val instants = new java.util.concurrent.CopyOnWriteArrayList[Instant]()
+
+    override def notifyChanged(value: Instant): Unit = instants.add(value)
+  }
+
+  class CountingObserver(sleepMillis: Long) extends AbstractObserver[Instant] {
+    val count = new AtomicInteger(0)
+
+    override def notifyChanged(value: Instant): Unit = {
+      count.incrementAndGet()
+      if (sleepMillis > 0) Thread.sleep(sleepMillis)
+    }
+  }
+
+}
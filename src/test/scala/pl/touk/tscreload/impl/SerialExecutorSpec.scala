@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{CopyOnWriteArrayList, Executors, TimeUnit}
+
+import org.scalatest.{FlatSpec, Matchers}
+
+import scala.collection.JavaConverters._
+
+class SerialExecutorSpec extends FlatSpec with Matchers {
+
+  it should "run tasks one at a time in order of submission on multithreaded executor" in {
+    val pool = Executors.newFixedThreadPool(8)
+    try {
+      val serial = new SerialExecutor(pool)
+      val running = new AtomicInteger(0)
+      val overlaps = new AtomicInteger(0)
+      val done = new CopyOnWriteArrayList[Int]()
+      (1 to 10000).foreach { n =>
+        serial.execute(new Runnable {
+          override def run(): Unit = {
+            if (running.incrementAndGet() > 1) overlaps.incrementAndGet()
+            done.add(n)
+            running.decrementAndGet()
+          }
+        })
+      }
+      pool.shutdown()
+      pool.awaitTermination(10, TimeUnit.SECONDS) shouldBe true
+
+      overlaps.get() shouldEqual 0
+      done.asScala shouldEqual (1 to 10000)
+    } finally {
+      pool.shutdownNow()
+    }
+  }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl
+
+import java.io.{File, ObjectInputFilter}
+import java.nio.file.Files
+
+import org.scalatest.{FlatSpec, GivenWhenThen, Matchers}
+
+import scala.collection.JavaConverters._
+
+class SharedReloadSpec extends FlatSpec with Matchers with GivenWhenThen {
+
+  it should "not publish again value equal to the latest published one" in {
+    Given("leader of shared reloads")
+    val directory = Files.createTempDirectory("shared").toFile
+    val scannedFile = new File(directory, "foo.conf")
+    val shared = SharedReload.forFiles(directory, "", List(scannedFile).asJava,
+      ObjectInputFilter.Config.createFilter("java.**;!*"))
+    shared.tryLead() shouldBe true
+
+    When("value is published")
+    shared.publish("foo") shouldEqual 1L
+
+    Then("equal value should not change generation")
+    shared.publish(new String("foo")) shouldEqual 1L
+    shared.currentGeneration() shouldEqual 1L
+
+    And("changed value should be published as the next generation")
+    shared.publish("bar") shouldEqual 2L
+    shared.currentGeneration() shouldEqual 2L
+    shared.load[String](2L).get() shouldEqual "bar"
+  }
+
+}
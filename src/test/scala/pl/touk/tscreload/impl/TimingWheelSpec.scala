@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.touk.tscreload.impl
+
+import org.scalatest.{FlatSpec, Matchers}
+
+import scala.collection.mutable
+import scala.util.Random
+
+class TimingWheelSpec extends FlatSpec with Matchers {
+
+  it should "pass entries to consumer exactly at their deadlines" in {
+    val wheel = new TimingWheel[TestEntry](0)
+    val random = new Random(42)
+    val entries = (1 to 2000).map(_ => TestEntry(1 + random.nextInt(500000)))
+    entries.foreach(wheel.add)
+
+    val fired = mutable.Buffer[(TestEntry, Long)]()
+    while (wheel.size() > 0) {
+      wheel.advance(new java.util.function.Consumer[TestEntry] {
+        override def accept(e: TestEntry): Unit = fired += (e -> wheel.currentTick())
+      })
+    }
+
+    fired should have size entries.size
+    all(fired.map { case (e, tick) => tick - e.getDeadline }) shouldEqual 0
+  }
+
+  it should "pass overdue entries on next tick" in {
+    val wheel = new TimingWheel[TestEntry](100)
+    wheel.add(TestEntry(50))
+
+    var fired = List.empty[Long]
+    wheel.advance(new java.util.function.Consumer[TestEntry] {
+      override def accept(e: TestEntry): Unit = fired = wheel.currentTick() :: fired
+    })
+
+    fired shouldEqual List(101)
+  }
+
+  case class TestEntry(deadline: Long) extends TimingWheel.Entry {
+    override def getDeadline: Long = deadline
+  }
+
+}